@@ -2,17 +2,27 @@ package com.github.zaphx.discordbot;
 
 import com.github.zaphx.discordbot.discord.command.*;
 import com.github.zaphx.discordbot.api.commandhandler.CommandHandler;
+import com.github.zaphx.discordbot.api.dispatch.OrderedDispatcher;
+import com.github.zaphx.discordbot.api.pipeline.MessagePipeline;
+import com.github.zaphx.discordbot.discord.stages.*;
 import com.github.zaphx.discordbot.discord.listeners.*;
+import com.github.zaphx.discordbot.discord.log.LogQueue;
+import com.github.zaphx.discordbot.discord.raid.RaidDetector;
 import com.github.zaphx.discordbot.managers.AntiSwearManager;
 import com.github.zaphx.discordbot.managers.DiscordClientManager;
+import com.github.zaphx.discordbot.managers.MuteManager;
+import com.github.zaphx.discordbot.managers.RoleJobManager;
 import com.github.zaphx.discordbot.managers.SQLManager;
 import com.github.zaphx.discordbot.minecraft.commands.MainCommand;
 import com.github.zaphx.discordbot.minecraft.commands.ToDiscord;
 import discord4j.core.DiscordClient;
 import discord4j.core.event.domain.channel.TextChannelCreateEvent;
 import discord4j.core.event.domain.channel.TextChannelDeleteEvent;
+import discord4j.core.event.domain.channel.TextChannelUpdateEvent;
 import discord4j.core.event.domain.guild.BanEvent;
+import discord4j.core.event.domain.guild.GuildUpdateEvent;
 import discord4j.core.event.domain.guild.MemberJoinEvent;
+import discord4j.core.event.domain.guild.MemberUpdateEvent;
 import discord4j.core.event.domain.lifecycle.ReadyEvent;
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.event.domain.message.MessageDeleteEvent;
@@ -56,28 +66,43 @@ public class Dizcord extends JavaPlugin {
 
 
         }
+        // The schema must be up to date before the client logs in, as the ready event already uses it
+        SQLManager sql = SQLManager.getInstance();
+        try {
+            sql.migrate().block();
+        } catch (RuntimeException e) {
+            System.err.print("An error occurred while migrating the database schema. See stacktrace below for more information.");
+            e.printStackTrace();
+            log.severe("The database schema could not be brought up to date. Dizcord will be disabled.");
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+
         log.info("Logging client in");
         clientManager.login(client);
 
-        SQLManager sql = SQLManager.getInstance();
-
         getLogger().log(Level.INFO, "Registering listeners");
-        client.getEventDispatcher().on(ReadyEvent.class).subscribe(event -> new OnReadyEvent().onReady());
-        client.getEventDispatcher().on(MemberJoinEvent.class).subscribe(event -> new UserJoinEvent().onUserJoinEvent(event));
-        client.getEventDispatcher().on(MessageDeleteEvent.class).subscribe(event -> new ChatDeleteEvent().onMessageDelete(event));
-        client.getEventDispatcher().on(BanEvent.class).subscribe(event -> new OnUserBanEvent().onUserBan(event));
-        client.getEventDispatcher().on(MessageCreateEvent.class).onErrorContinue((t,o) -> {}).subscribe(event -> new ChatListener().onChat(event));
-        client.getEventDispatcher().on(TextChannelCreateEvent.class).onErrorContinue((t,o) -> {}).subscribe(event -> new OnChannelCreateEvent().onChannelCreate(event));
-        client.getEventDispatcher().on(TextChannelDeleteEvent.class).onErrorContinue((t,o) -> {}).subscribe(event -> new OnChannelDeleteEvent().onChannelDelete(event));
-        client.getEventDispatcher().on(MessageUpdateEvent.class).onErrorContinue((t,o) -> {}).subscribe(event -> new OnChatEditEvent().onEdit(event));
-        client.getEventDispatcher().on(RoleCreateEvent.class).onErrorContinue((t,o) -> {}).subscribe(event -> new OnRoleCreateEvent().onCreateEvent(event));
-        client.getEventDispatcher().on(RoleUpdateEvent.class).onErrorContinue((t,o) -> {}).subscribe(event -> new OnRoleEditEvent().onEditEvent(event));
-        client.getEventDispatcher().on(RoleDeleteEvent.class).onErrorContinue((t,o) -> {}).subscribe(event -> new OnRoleDeleteEvent().onDeleteEvent(event));
-
-        sql.createMutesIfNotExists();
-        sql.createAccountLinkIfNotExists();
-        sql.createWarningsIfNotExists();
-        sql.createMessagesIfNotExists();
+        // Events are handled in order per channel, or per user for member events, and in parallel otherwise
+        OrderedDispatcher dispatcher = OrderedDispatcher.getInstance();
+        dispatcher.on(client, ReadyEvent.class, event -> 0, event -> new OnReadyEvent().onReady());
+        dispatcher.on(client, MemberJoinEvent.class, event -> event.getMember().getId().asLong(), event -> new UserJoinEvent().onUserJoinEvent(event));
+        dispatcher.on(client, MessageDeleteEvent.class, event -> event.getChannelId().asLong(), event -> new ChatDeleteEvent().onMessageDelete(event));
+        dispatcher.on(client, MemberUpdateEvent.class, event -> event.getMemberId().asLong(), event -> new OnMemberUpdateEvent().onMemberUpdate(event));
+        dispatcher.on(client, GuildUpdateEvent.class, event -> event.getCurrent().getId().asLong(), event -> new OnGuildUpdateEvent().onGuildUpdate(event));
+        dispatcher.on(client, BanEvent.class, event -> event.getUser().getId().asLong(), event -> new OnUserBanEvent().onUserBan(event));
+        dispatcher.on(client, MessageCreateEvent.class, event -> event.getMessage().getChannelId().asLong(), event -> new ChatListener().onChat(event));
+        dispatcher.on(client, TextChannelCreateEvent.class, event -> event.getChannel().getId().asLong(), event -> new OnChannelCreateEvent().onChannelCreate(event));
+        dispatcher.on(client, TextChannelDeleteEvent.class, event -> event.getChannel().getId().asLong(), event -> new OnChannelDeleteEvent().onChannelDelete(event));
+        dispatcher.on(client, TextChannelUpdateEvent.class, event -> event.getCurrent().getId().asLong(), event -> new OnChannelEditEvent().onChannelEdit(event));
+        dispatcher.on(client, MessageUpdateEvent.class, event -> event.getChannelId().asLong(), event -> new OnChatEditEvent().onEdit(event));
+        dispatcher.on(client, RoleCreateEvent.class, event -> event.getGuildId().asLong(), event -> new OnRoleCreateEvent().onCreateEvent(event));
+        dispatcher.on(client, RoleUpdateEvent.class, event -> event.getCurrent().getGuildId().asLong(), event -> new OnRoleEditEvent().onEditEvent(event));
+        dispatcher.on(client, RoleDeleteEvent.class, event -> event.getGuildId().asLong(), event -> new OnRoleDeleteEvent().onDeleteEvent(event));
+
+        AntiSwearManager.getInstance().reload().subscribe(filters -> log.info("Loaded " + filters.getWords().getWordCount() + " filtered words"), e -> {
+            System.err.print("An error occurred while loading the filter files. See stacktrace below for more information.");
+            e.printStackTrace();
+        });
 
         CommandHandler commandHandler = CommandHandler.getInstance();
         commandHandler.registerCommand("help", new Help());
@@ -90,6 +115,13 @@ public class Dizcord extends JavaPlugin {
         commandHandler.registerCommand("whois", new WhoIs());
         commandHandler.registerCommand("events", new Event());
 
+        MessagePipeline pipeline = MessagePipeline.getInstance();
+        pipeline.registerStage(new AdvertisementStage());
+        pipeline.registerStage(new SwearFilterStage());
+        pipeline.registerStage(new CommandStage());
+        pipeline.registerStage(new TrelloStage());
+        pipeline.registerStage(new ArchiveStage());
+
         getCommand("dizcord").setExecutor(new MainCommand());
         getCommand("todiscord").setExecutor(new ToDiscord());
 
@@ -101,7 +133,16 @@ public class Dizcord extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        // Queued logs are sent while the client is still logged in
+        LogQueue.flushAll();
         clientManager.logout(client);
+        OrderedDispatcher.getInstance().shutdown();
+        CommandHandler.getInstance().disableAllCommands();
+        MuteManager.getInstance().shutdown();
+        RoleJobManager.getInstance().shutdown();
+        RaidDetector.getInstance().shutdown();
+        AntiSwearManager.getInstance().shutdown();
+        SQLManager.getInstance().shutdown();
         getLogger().log(Level.INFO, "Dizcord has successfully been disabled!");
     }
 
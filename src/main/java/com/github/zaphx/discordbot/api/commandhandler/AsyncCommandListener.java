@@ -0,0 +1,44 @@
+package com.github.zaphx.discordbot.api.commandhandler;
+
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.object.entity.MessageChannel;
+import discord4j.core.object.entity.User;
+import org.jetbrains.annotations.NotNull;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * This is the command listener interface for commands that wait on Discord or the database. Instead of blocking until
+ * it is done, the command returns a {@link Mono} that emits the {@link CommandExitCode} once it is done.
+ * <p>
+ * Commands implementing {@link CommandListener} are adapted to this interface when they are registered.
+ */
+public interface AsyncCommandListener {
+
+    /**
+     * The method used whenever a command is executed. This is called on the command's own threads, and the command is
+     * stopped if the Mono does not emit within the command's timeout.
+     * @param sender The command sender.
+     * @param command The command used.
+     * @param args The arguments provided by the sender.
+     * @param destination The channel the message should be sent to. By default this is the channel the command was received in.
+     * @param event The event provided by discord.
+     * @return A Mono emitting a {@link CommandExitCode} showing how the command was exited.
+     */
+    Mono<CommandExitCode> onCommand(User sender, String command, List<String> args, MessageChannel destination, MessageCreateEvent event);
+
+    /**
+     * Used to generate the help message, when the help command is run on the command.
+     * @return Returns the help message of the provided command.
+     */
+    @NotNull
+    String getCommandDescription();
+
+    /**
+     * Used to generate the usage message in the help embed, when the help command is run on the command.
+     * @return Returns the usage message of the provided command.
+     */
+    @NotNull
+    String getCommandUsage();
+}
@@ -0,0 +1,101 @@
+package com.github.zaphx.discordbot.api.commandhandler;
+
+import java.nio.CharBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The arguments of a command, as positions in the message they were written in. The message is only split the first
+ * time an argument is asked for, and an argument is only copied out of the message when it is read as a String.
+ * <p>
+ * Arguments are separated by whitespace. Text in double quotes is a single argument, without the quotes, so
+ * {@code !warn @user "spamming links"} has two arguments. A quote that is never closed runs to the end of the message.
+ */
+public class CommandArguments extends AbstractList<String> implements RandomAccess {
+
+    private final String content;
+    private final int start;
+    /**
+     * The start and end of every argument, or null until the arguments are first asked for
+     */
+    private int[] bounds;
+    private int size;
+
+    /**
+     * @param content The content of the message
+     * @param start   Where the arguments start, right after the name of the command
+     */
+    CommandArguments(String content, int start) {
+        this.content = content;
+        this.start = start;
+    }
+
+    @Override
+    public String get(int index) {
+        checkIndex(index);
+        return content.substring(bounds[index * 2], bounds[index * 2 + 1]);
+    }
+
+    @Override
+    public int size() {
+        split();
+        return size;
+    }
+
+    /**
+     * Gets an argument without copying it out of the message
+     *
+     * @param index The index of the argument
+     * @return The argument
+     */
+    public CharSequence view(int index) {
+        checkIndex(index);
+        return CharBuffer.wrap(content, bounds[index * 2], bounds[index * 2 + 1]);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private void split() {
+        if (bounds != null) {
+            return;
+        }
+        int[] found = new int[8];
+        int count = 0;
+        int i = start;
+        int length = content.length();
+        while (i < length) {
+            if (Character.isWhitespace(content.charAt(i))) {
+                i++;
+                continue;
+            }
+            int from;
+            int to;
+            if (content.charAt(i) == '"') {
+                from = ++i;
+                while (i < length && content.charAt(i) != '"') {
+                    i++;
+                }
+                to = i++;
+            } else {
+                from = i;
+                while (i < length && !Character.isWhitespace(content.charAt(i))) {
+                    i++;
+                }
+                to = i;
+            }
+            if (count * 2 == found.length) {
+                found = Arrays.copyOf(found, found.length * 2);
+            }
+            found[count * 2] = from;
+            found[count * 2 + 1] = to;
+            count++;
+        }
+        size = count;
+        bounds = found;
+    }
+}
@@ -25,7 +25,11 @@ public enum CommandExitCode {
     /**
      * Returned when there is no command with that name
      */
-    NO_SUCH_COMMAND(5)
+    NO_SUCH_COMMAND(5),
+    /**
+     * Returned when the user has run the command too often, and has to wait before running it again
+     */
+    RATE_LIMITED(6)
     ;
 
     private int code;
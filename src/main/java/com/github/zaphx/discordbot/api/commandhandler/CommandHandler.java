@@ -4,16 +4,17 @@ import com.github.zaphx.discordbot.Dizcord;
 import com.github.zaphx.discordbot.managers.ChannelManager;
 import com.github.zaphx.discordbot.managers.DiscordClientManager;
 import com.github.zaphx.discordbot.managers.EmbedManager;
+import com.github.zaphx.discordbot.managers.PermissionManager;
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.MessageChannel;
 import discord4j.core.object.entity.User;
 import discord4j.core.object.util.Permission;
 import gnu.trove.map.TMap;
+import gnu.trove.map.TObjectIntMap;
 import gnu.trove.map.hash.THashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
 import org.apache.commons.lang.exception.ExceptionUtils;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 
@@ -30,6 +31,10 @@ public class CommandHandler {
      * The instance of the client manager, used to interact with the discord client.
      */
     private DiscordClientManager clientManager = DiscordClientManager.getInstance();
+    /**
+     * The instance of the permission manager, used to check permissions without a request.
+     */
+    private PermissionManager permissionManager = PermissionManager.getInstance();
     /**
      * The instance of the embed manager
      */
@@ -45,7 +50,16 @@ public class CommandHandler {
     /**
      * The map where all commands are registered to.
      */
-    private static TMap<String, Object> commandMap = new THashMap<>();
+    private static TMap<String, RegisteredCommand> commandMap = new THashMap<>();
+    /**
+     * Every alias, mapped to the name of its command.
+     */
+    private static TMap<String, String> aliasMap = new THashMap<>();
+    /**
+     * The names and aliases of every command, used to find the command a message starts with.
+     */
+    private volatile CommandTrie trie = new CommandTrie();
+
     private CommandHandler() {
     }
 
@@ -59,52 +73,66 @@ public class CommandHandler {
     }
 
     /**
-     * Checks a message to see if it is a valid command.
+     * Checks a message to see if it is a valid command. Messages that do not start with the prefix are turned away
+     * without copying anything, and the sender and channel are only looked up once a command matched.
      *
      * @param event The event to check in.
      */
     public void checkForCommand(MessageCreateEvent event) {
-        User sender = event.getMember().orElseThrow(NullPointerException::new);
-        MessageChannel channel = event.getMessage().getChannel().block();
         String s = event.getMessage().getContent().orElse("");
-        String[] fullCommand = s.toLowerCase().split(" ");
-        if (s.startsWith(commandPrefix.toLowerCase())) {
-            if (fullCommand.length == 0) return;
-            String command = fullCommand[0].substring(commandPrefix.length());
-            List<String> args = new ArrayList<>(Arrays.asList(fullCommand));
-            args.remove(0);
-            if (s.length() == commandPrefix.length()) return;
-            if (commandMap.get(command) != null) {
-                CommandExitCode exitCode = ((CommandListener) commandMap.get(command)).onCommand(sender, command, args, channel, event);
-                switch (exitCode) {
-                    case ERROR:
-                        channelManager.sendMessageToChannel(event,embedManager.exception());
-                        // Should tell the user that the command encountered an exception
-                        break;
-                    case INVALID_SYNTAX:
-                        channelManager.sendMessageToChannel(event, embedManager.invalidSyntaxEmbed(command));
-                        // Should tell the user that the arguments were incorrect
-                        break;
-                    case INSUFFICIENT_PERMISSIONS:
-                        // Should tell the user they don't have the right permissions to perform that command
-                        channelManager.sendMessageToChannel(event, embedManager.insufficientPermissions());
-                        break;
-                    case CLIENT_INSUFFICIENT_PERMISSIONS:
-                        channelManager.sendMessageToChannel(event, embedManager.insufficientClientPermissions());
-                        // Should tell the user the client doesn't have the permissions to perform that action
-                        break;
-                    case NO_SUCH_COMMAND:
-                        channelManager.sendMessageToChannel(event, embedManager.invalidCommandEmbed());
-                        break;
-                    case SUCCESS:
-                        // Nothing
-                        break;
-                    default:
-                        throw new IllegalStateException("An exit code must be provided in command.");
-                }
-            } else {
+        if (s.length() <= commandPrefix.length() || !s.regionMatches(true, 0, commandPrefix, 0, commandPrefix.length())) return;
+        CommandTrie.Node match = trie.find(s, commandPrefix.length());
+        if (match == null) {
+            if (!Character.isWhitespace(s.charAt(commandPrefix.length()))) {
                 channelManager.sendMessageToChannel(event, embedManager.invalidCommandEmbed());
             }
+            return;
+        }
+        String command = match.getName();
+        User sender = event.getMember().orElseThrow(NullPointerException::new);
+        MessageChannel channel = channelManager.getChannel(event.getMessage().getChannelId());
+        List<String> args = new CommandArguments(s, commandPrefix.length() + match.getLength());
+        switch (match.getCommand().tryAcquire(sender.getId().asLong())) {
+            case LIMITED:
+                handleExitCode(event, command, CommandExitCode.RATE_LIMITED);
+                return;
+            case SILENCED:
+                // The user was already told, and telling them again would only add to the spam
+                return;
+        }
+        // The command runs on its own threads, so a slow command does not hold up chat or other commands
+        match.getCommand().run(sender, args, channel, event).subscribe(exitCode -> handleExitCode(event, command, exitCode));
+    }
+
+    private void handleExitCode(MessageCreateEvent event, String command, CommandExitCode exitCode) {
+        switch (exitCode) {
+            case ERROR:
+                channelManager.sendMessageToChannel(event,embedManager.exception());
+                // Should tell the user that the command encountered an exception
+                break;
+            case INVALID_SYNTAX:
+                channelManager.sendMessageToChannel(event, embedManager.invalidSyntaxEmbed(command));
+                // Should tell the user that the arguments were incorrect
+                break;
+            case INSUFFICIENT_PERMISSIONS:
+                // Should tell the user they don't have the right permissions to perform that command
+                channelManager.sendMessageToChannel(event, embedManager.insufficientPermissions());
+                break;
+            case CLIENT_INSUFFICIENT_PERMISSIONS:
+                channelManager.sendMessageToChannel(event, embedManager.insufficientClientPermissions());
+                // Should tell the user the client doesn't have the permissions to perform that action
+                break;
+            case NO_SUCH_COMMAND:
+                channelManager.sendMessageToChannel(event, embedManager.invalidCommandEmbed());
+                break;
+            case RATE_LIMITED:
+                channelManager.sendMessageToChannel(event, embedManager.rateLimited());
+                break;
+            case SUCCESS:
+                // Nothing
+                break;
+            default:
+                throw new IllegalStateException("An exit code must be provided in command.");
         }
     }
 
@@ -112,21 +140,78 @@ public class CommandHandler {
      * The method used to register commands in the command handler. These commands are registered to the command map.
      *
      * @param commandName The name of the command being registered.
-     * @param command     The command class.
+     * @param command     The command class, either a {@link CommandListener} or an {@link AsyncCommandListener}.
+     * @param aliases     Other names the command can be run by. These are not listed in the command map.
      */
-    public void registerCommand(String commandName, Object command) {
-        if (command instanceof CommandListener) {
+    public synchronized void registerCommand(String commandName, Object command, String... aliases) {
+        if (command instanceof CommandListener || command instanceof AsyncCommandListener) {
             Dizcord.getInstance().getLogger().log(Level.INFO, "Registering " + commandName + " as a command!");
-            commandMap.put(commandName.toLowerCase(), command);
-        } else throw new IllegalStateException("Object " + command + " is not an instance of CommandListener");
+            String name = commandName.toLowerCase();
+            AsyncCommandListener listener = command instanceof AsyncCommandListener ? (AsyncCommandListener) command : new SyncCommandAdapter((CommandListener) command);
+            RegisteredCommand previous = commandMap.put(name, new RegisteredCommand(name, listener));
+            if (previous != null) {
+                previous.shutdown();
+            }
+            for (String alias : aliases) {
+                aliasMap.put(alias.toLowerCase(), name);
+            }
+            rebuildTrie();
+        } else throw new IllegalStateException("Object " + command + " is not an instance of CommandListener or AsyncCommandListener");
+    }
+
+    /**
+     * Builds a new trie of every command and alias, and swaps it in for the old one
+     */
+    private void rebuildTrie() {
+        CommandTrie rebuilt = new CommandTrie();
+        // Aliases go in first, so a command is never hidden by an alias of the same name
+        aliasMap.forEachEntry((alias, name) -> {
+            if (commandMap.containsKey(name)) {
+                rebuilt.add(alias, name, commandMap.get(name));
+            }
+            return true;
+        });
+        commandMap.forEachEntry((name, command) -> {
+            rebuilt.add(name, name, command);
+            return true;
+        });
+        trie = rebuilt;
     }
 
     /**
      * Gets the command list for the bot
      * @return The command list
      */
-    public TMap<String, Object> getCommandMap() {
-        return commandMap;
+    public TMap<String, AsyncCommandListener> getCommandMap() {
+        TMap<String, AsyncCommandListener> commands = new THashMap<>();
+        commandMap.forEachEntry((name, command) -> {
+            commands.put(name, command.getCommand());
+            return true;
+        });
+        return commands;
+    }
+
+    /**
+     * Gets how many runs of every command are running or waiting to run
+     * @return The amount of runs by the name of the command
+     */
+    public TObjectIntMap<String> getRunningCommands() {
+        TObjectIntMap<String> running = new TObjectIntHashMap<>();
+        commandMap.forEachEntry((name, command) -> {
+            running.put(name, command.getRunning());
+            return true;
+        });
+        return running;
+    }
+
+    /**
+     * Stops every command that is running or waiting to run. The commands exit with {@link CommandExitCode#ERROR}
+     */
+    public void cancelAllCommands() {
+        commandMap.forEachValue(command -> {
+            command.cancel();
+            return true;
+        });
     }
 
     /**
@@ -136,7 +221,7 @@ public class CommandHandler {
      * @return True if the user has permission
      */
     public boolean userHasPermission(MessageCreateEvent event, Permission permission) {
-        return event.getMember().orElseThrow(NullPointerException::new).getBasePermissions().blockOptional().orElseThrow(NullPointerException::new).contains(permission);
+        return permissionManager.hasPermission(event.getMember().orElseThrow(NullPointerException::new), permission);
     }
 
     /**
@@ -146,7 +231,7 @@ public class CommandHandler {
      * @return True if the client has permission
      */
     public boolean clientHasPermission(MessageCreateEvent event, Permission permission) {
-        return clientManager.getSelf().getBasePermissions().blockOptional().orElseThrow(NullPointerException::new).contains(permission);
+        return permissionManager.clientHasPermission(permission);
     }
 
     /**
@@ -165,7 +250,13 @@ public class CommandHandler {
     /**
      * Disables all commands
      */
-    public void disableAllCommands() {
+    public synchronized void disableAllCommands() {
+        commandMap.forEachValue(command -> {
+            command.shutdown();
+            return true;
+        });
         commandMap.clear();
+        aliasMap.clear();
+        trie = new CommandTrie();
     }
 }
@@ -20,6 +20,7 @@ public interface CommandListener {
     MessageManager messageManager = MessageManager.getInstance();
     ChannelManager channelManager = ChannelManager.getInstance();
     RolesManager rolesManager = RolesManager.getInstance();
+    MuteManager muteManager = MuteManager.getInstance();
     SQLManager sql = SQLManager.getInstance();
 
     String prefix = Dizcord.getInstance().getConfig().getString("discord.command-prefix");
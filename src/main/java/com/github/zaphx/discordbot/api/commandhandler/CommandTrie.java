@@ -0,0 +1,90 @@
+package com.github.zaphx.discordbot.api.commandhandler;
+
+import java.util.Arrays;
+
+/**
+ * Finds the command a message starts with, by walking the characters of the message through a tree of every command
+ * name and alias. Names are matched ignoring case, and the message is never copied, so a message that is not a command
+ * is turned away after a few characters.
+ */
+class CommandTrie {
+
+    private final Node root = new Node();
+
+    /**
+     * Adds a name the command can be run by
+     *
+     * @param key     The name or alias of the command
+     * @param name    The name the command is registered as
+     * @param command The command
+     */
+    void add(String key, String name, RegisteredCommand command) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(Character.toLowerCase(key.charAt(i)), true);
+        }
+        node.name = name;
+        node.command = command;
+        node.length = key.length();
+    }
+
+    /**
+     * Finds the command a message starts with
+     *
+     * @param content The content of the message
+     * @param start   Where the name of the command starts, right after the prefix
+     * @return The node of the command, or null if the message does not start with one
+     */
+    Node find(String content, int start) {
+        Node node = root;
+        for (int i = start; i < content.length() && !Character.isWhitespace(content.charAt(i)); i++) {
+            node = node.child(Character.toLowerCase(content.charAt(i)), false);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.command == null ? null : node;
+    }
+
+    static class Node {
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private String name;
+        private RegisteredCommand command;
+        private int length;
+
+        /**
+         * @return The name the command is registered as
+         */
+        String getName() {
+            return name;
+        }
+
+        RegisteredCommand getCommand() {
+            return command;
+        }
+
+        /**
+         * @return The length of the name or alias that was matched
+         */
+        int getLength() {
+            return length;
+        }
+
+        private Node child(char key, boolean create) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            if (!create) {
+                return null;
+            }
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = key;
+            return children[children.length - 1] = new Node();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.zaphx.discordbot.api.commandhandler;
+
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how often each user can run a command, with a token bucket per user. A user can run the command
+ * {@code uses} times in a row, and regains one use every {@code seconds / uses} seconds.
+ * <p>
+ * A bucket is stored as a single long, the time at which it will be full again. Using the command moves that time one
+ * use further into the future, and the command is refused when it would be more than a full bucket away, so buckets
+ * never need to be refilled. Full buckets are the same as missing ones, and are swept out now and then.
+ */
+class RateLimiter {
+
+    enum Result {
+        /**
+         * The user can run the command
+         */
+        ALLOWED,
+        /**
+         * The user has run the command too often, and should be told so
+         */
+        LIMITED,
+        /**
+         * The user has run the command too often, and has already been told so
+         */
+        SILENCED
+    }
+
+    private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toNanos(5);
+
+    private final long interval;
+    private final long tolerance;
+    /**
+     * The time every non-full bucket will be full again, by the Id of the user
+     */
+    private final TLongLongMap full = new TLongLongHashMap();
+    /**
+     * Users that were refused since they last ran the command
+     */
+    private final TLongSet warned = new TLongHashSet();
+    private long lastSweep = System.nanoTime();
+
+    /**
+     * @param uses    How many times the command can be run in a row
+     * @param seconds How long it takes for a bucket to fill up completely
+     */
+    RateLimiter(int uses, long seconds) {
+        this.interval = TimeUnit.SECONDS.toNanos(seconds) / Math.max(1, uses);
+        this.tolerance = interval * Math.max(1, uses);
+    }
+
+    /**
+     * Takes a use from a user's bucket
+     *
+     * @param user The Id of the user
+     * @return Whether the user can run the command
+     */
+    synchronized Result tryAcquire(long user) {
+        long now = System.nanoTime();
+        if (now - lastSweep > SWEEP_INTERVAL) {
+            sweep(now);
+        }
+        long fullAt = full.containsKey(user) ? full.get(user) : now;
+        long next = Math.max(fullAt, now) + interval;
+        if (next - now > tolerance) {
+            return warned.add(user) ? Result.LIMITED : Result.SILENCED;
+        }
+        full.put(user, next);
+        warned.remove(user);
+        return Result.ALLOWED;
+    }
+
+    /**
+     * @return The amount of users with a bucket that is not full
+     */
+    synchronized int size() {
+        return full.size();
+    }
+
+    private void sweep(long now) {
+        lastSweep = now;
+        full.retainEntries((user, fullAt) -> fullAt - now > 0);
+        warned.retainAll(full.keySet());
+    }
+}
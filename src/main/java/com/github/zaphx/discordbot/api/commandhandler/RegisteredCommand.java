@@ -0,0 +1,127 @@
+package com.github.zaphx.discordbot.api.commandhandler;
+
+import com.github.zaphx.discordbot.Dizcord;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.object.entity.MessageChannel;
+import discord4j.core.object.entity.User;
+import org.bukkit.configuration.file.FileConfiguration;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.FluxProcessor;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * A command with the threads it runs on. Every command has its own bounded pool, so a slow command only holds up
+ * other runs of itself, and its own {@link RateLimiter}. The size of the pool, how many runs can wait for it, how long a
+ * run may take and how often a user may run the command can be set under discord.commands.&lt;name&gt; in the config,
+ * with the defaults under discord.commands.
+ */
+class RegisteredCommand {
+
+    private final String name;
+    private final AsyncCommandListener command;
+    private final ThreadPoolExecutor executor;
+    private final Scheduler scheduler;
+    private final Duration timeout;
+    /**
+     * Emits when every running run of the command should be stopped
+     */
+    private final FluxProcessor<Boolean, Boolean> cancelled = DirectProcessor.<Boolean>create().serialize();
+    private final AtomicInteger running = new AtomicInteger();
+    private final RateLimiter rateLimiter;
+
+    RegisteredCommand(String name, AsyncCommandListener command) {
+        FileConfiguration config = Dizcord.getInstance().getConfig();
+        String path = "discord.commands." + name;
+        int concurrency = config.getInt(path + ".concurrency", config.getInt("discord.commands.concurrency", 1));
+        int queue = config.getInt(path + ".queue", config.getInt("discord.commands.queue", 10));
+        this.name = name;
+        this.command = command;
+        this.timeout = Duration.ofSeconds(config.getLong(path + ".timeout", config.getLong("discord.commands.timeout", 30)));
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queue), runnable -> {
+            Thread thread = new Thread(runnable, "Dizcord-Command-" + name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Commands that are rarely used should not keep their threads around
+        this.executor.allowCoreThreadTimeOut(true);
+        this.scheduler = Schedulers.fromExecutorService(executor);
+        this.rateLimiter = new RateLimiter(config.getInt(path + ".rate-limit.uses", config.getInt("discord.commands.rate-limit.uses", 5)),
+                config.getLong(path + ".rate-limit.seconds", config.getLong("discord.commands.rate-limit.seconds", 60)));
+    }
+
+    /**
+     * Runs the command on its own threads
+     *
+     * @return A Mono emitting how the command was exited. A command that fails, times out, is cancelled or cannot be
+     * queued exits with {@link CommandExitCode#ERROR}
+     */
+    Mono<CommandExitCode> run(User sender, List<String> args, MessageChannel destination, MessageCreateEvent event) {
+        return Mono.defer(() -> command.onCommand(sender, name, args, destination, event))
+                .subscribeOn(scheduler)
+                .timeout(timeout)
+                .takeUntilOther(cancelled)
+                .defaultIfEmpty(CommandExitCode.ERROR)
+                .doOnSubscribe(subscription -> running.incrementAndGet())
+                .doFinally(signal -> running.decrementAndGet())
+                .onErrorResume(e -> {
+                    if (e instanceof TimeoutException) {
+                        Dizcord.getInstance().getLogger().log(Level.WARNING, "The " + name + " command took longer than " + timeout.getSeconds() + " seconds and was stopped");
+                    } else if (e instanceof RejectedExecutionException) {
+                        Dizcord.getInstance().getLogger().log(Level.WARNING, "The " + name + " command is already running too often");
+                    } else {
+                        System.err.print("An error occurred while running the " + name + " command. See stacktrace below for more information.");
+                        e.printStackTrace();
+                    }
+                    return Mono.just(CommandExitCode.ERROR);
+                });
+    }
+
+    /**
+     * Takes a use of the command from a user
+     *
+     * @param user The Id of the user
+     * @return Whether the user can run the command
+     */
+    RateLimiter.Result tryAcquire(long user) {
+        return rateLimiter.tryAcquire(user);
+    }
+
+    /**
+     * Stops every run of the command that is running or waiting to run
+     */
+    void cancel() {
+        cancelled.onNext(true);
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    AsyncCommandListener getCommand() {
+        return command;
+    }
+
+    /**
+     * @return The amount of runs of the command that are running or waiting to run
+     */
+    int getRunning() {
+        return running.get();
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.zaphx.discordbot.api.commandhandler;
+
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.object.entity.MessageChannel;
+import discord4j.core.object.entity.User;
+import org.jetbrains.annotations.NotNull;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Runs a {@link CommandListener} as an {@link AsyncCommandListener}. The command still blocks, but on the thread the Mono
+ * is subscribed on, which is one of the command's own threads.
+ */
+class SyncCommandAdapter implements AsyncCommandListener {
+
+    private final CommandListener command;
+
+    SyncCommandAdapter(CommandListener command) {
+        this.command = command;
+    }
+
+    @Override
+    public Mono<CommandExitCode> onCommand(User sender, String command, List<String> args, MessageChannel destination, MessageCreateEvent event) {
+        return Mono.fromCallable(() -> this.command.onCommand(sender, command, args, destination, event));
+    }
+
+    @NotNull
+    @Override
+    public String getCommandDescription() {
+        return command.getCommandDescription();
+    }
+
+    @NotNull
+    @Override
+    public String getCommandUsage() {
+        return command.getCommandUsage();
+    }
+}
@@ -0,0 +1,196 @@
+package com.github.zaphx.discordbot.api.dispatch;
+
+import com.github.zaphx.discordbot.Dizcord;
+import discord4j.core.DiscordClient;
+import discord4j.core.event.domain.Event;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+
+/**
+ * Runs event handlers on a pool of worker threads instead of the thread the event arrived on. Events are grouped by a
+ * key, usually the Id of their channel, or of the user for member events. Events with the same key are handled one at a
+ * time in the order they arrived, so an edit is never handled before the message it edits, while events with different
+ * keys are handled in parallel.
+ * <p>
+ * Every group has a bounded queue. When a group falls too far behind, new events for it are dropped and counted,
+ * rather than holding up every other group.
+ */
+public class OrderedDispatcher {
+
+    /**
+     * How many events a group handles before letting other groups use the thread
+     */
+    private static final int BATCH_SIZE = 32;
+    /**
+     * Dropped events are logged at most this often, in milliseconds
+     */
+    private static final long WARNING_INTERVAL = 10000;
+
+    private static OrderedDispatcher instance;
+    private FileConfiguration config = Dizcord.getInstance().getConfig();
+    private final int queueCapacity = config.getInt("discord.dispatch.queue-capacity", 1000);
+    private final ThreadPoolExecutor executor;
+    /**
+     * Groups with events queued or being handled. Tasks are only added, and drained groups only removed, while the map
+     * holds the key, so a task is never added to a removed group and a key never has two groups running at once
+     */
+    private final ConcurrentMap<Long, Group> groups = new ConcurrentHashMap<>();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicInteger highWatermark = new AtomicInteger();
+    private final AtomicLong lastWarning = new AtomicLong();
+
+    private OrderedDispatcher() {
+        int threads = config.getInt("discord.dispatch.threads", 4);
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "Dizcord-Event-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the instance of the OrderedDispatcher
+     *
+     * @return A new instance if one does not exist, else the instance
+     */
+    public static OrderedDispatcher getInstance() {
+        return instance == null ? instance = new OrderedDispatcher() : instance;
+    }
+
+    /**
+     * Registers a handler for every event of a type the client receives
+     *
+     * @param client  The client to listen to
+     * @param type    The type of event to handle
+     * @param key     Gets the key of an event. Events with the same key are handled in order
+     * @param handler The handler of the events
+     * @param <E>     The type of event
+     */
+    public <E extends Event> void on(DiscordClient client, Class<E> type, ToLongFunction<E> key, Consumer<E> handler) {
+        client.getEventDispatcher().on(type).subscribe(event -> dispatch(key.applyAsLong(event), () -> handler.accept(event)));
+    }
+
+    /**
+     * Queues a task behind every other task with the same key
+     *
+     * @param key  The key of the task
+     * @param task The task to run
+     */
+    public void dispatch(long key, Runnable task) {
+        groups.compute(key, (k, group) -> {
+            if (group == null) {
+                group = new Group(k);
+            }
+            if (group.size.get() >= queueCapacity) {
+                drop(k);
+                return group;
+            }
+            group.tasks.add(task);
+            dispatched.increment();
+            highWatermark.accumulateAndGet(group.size.incrementAndGet(), Math::max);
+            if (!group.scheduled) {
+                group.scheduled = true;
+                executor.execute(group);
+            }
+            return group;
+        });
+    }
+
+    /**
+     * Stops the worker threads. Events that have not been handled yet are discarded
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return The amount of events that have been queued
+     */
+    public long getDispatched() {
+        return dispatched.sum();
+    }
+
+    /**
+     * @return The amount of events dropped because their group's queue was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return The most events any group has had queued at once
+     */
+    public int getHighWatermark() {
+        return highWatermark.get();
+    }
+
+    /**
+     * @return The amount of groups with events queued or being handled
+     */
+    public int getActiveGroups() {
+        return groups.size();
+    }
+
+    private void drop(long key) {
+        dropped.increment();
+        long now = System.currentTimeMillis();
+        long last = lastWarning.get();
+        if (now - last >= WARNING_INTERVAL && lastWarning.compareAndSet(last, now)) {
+            Dizcord.getInstance().getLogger().warning("Events for " + Long.toUnsignedString(key) + " are arriving faster than they can be handled. "
+                    + getDropped() + " events have been dropped so far");
+        }
+    }
+
+    private class Group implements Runnable {
+
+        private final long key;
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        /**
+         * True while the group is queued on or running in the executor. Only set while the map holds the key
+         */
+        private boolean scheduled;
+
+        private Group(long key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    Runnable task = tasks.poll();
+                    if (task == null) {
+                        break;
+                    }
+                    size.decrementAndGet();
+                    try {
+                        task.run();
+                    } catch (Exception e) {
+                        Dizcord.getInstance().getLogger().log(Level.WARNING, "An error occurred while handling an event", e);
+                    }
+                }
+            } finally {
+                // Either the group is drained and removed, or it goes to the back of the executor's queue. This also
+                // happens when a task throws an Error, as the group would otherwise never be scheduled again
+                if (groups.computeIfPresent(key, (k, group) -> group.tasks.isEmpty() ? null : group) != null) {
+                    executor.execute(this);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.zaphx.discordbot.api.pipeline;
+
+import com.github.zaphx.discordbot.filter.ContentScan;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.User;
+
+/**
+ * A chat message as it passes through the {@link MessagePipeline}. Everything here is worked out once and shared by
+ * every stage.
+ */
+public class MessageContext {
+
+    private final MessageCreateEvent event;
+    private final ContentScan scan;
+    private final long channelId;
+    private final boolean bot;
+    private final boolean command;
+
+    /**
+     * @param event         The event of the message
+     * @param commandPrefix The prefix of commands
+     */
+    public MessageContext(MessageCreateEvent event, String commandPrefix) {
+        this.event = event;
+        this.scan = ContentScan.scan(event.getMessage().getContent().orElse(""));
+        this.channelId = event.getMessage().getChannelId().asLong();
+        // Webhooks have no member, and are treated like bots
+        this.bot = event.getMember().map(User::isBot).orElse(true);
+        this.command = scan.getContent().regionMatches(true, 0, commandPrefix, 0, commandPrefix.length());
+    }
+
+    public MessageCreateEvent getEvent() {
+        return event;
+    }
+
+    public Message getMessage() {
+        return event.getMessage();
+    }
+
+    /**
+     * @return The scan of the content of the message
+     */
+    public ContentScan getScan() {
+        return scan;
+    }
+
+    public long getChannelId() {
+        return channelId;
+    }
+
+    /**
+     * @return True if the message was sent by a bot or a webhook, else false
+     */
+    public boolean isBot() {
+        return bot;
+    }
+
+    /**
+     * @return True if the message starts with the command prefix, else false
+     */
+    public boolean isCommand() {
+        return command;
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.zaphx.discordbot.api.pipeline;
+
+import com.github.zaphx.discordbot.Dizcord;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import org.bukkit.configuration.file.FileConfiguration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * This class passes every chat message through the registered {@link MessageStage}s. Stages run in order of priority,
+ * and stages with the same priority run at the same time. Once a stage deletes the message, no later stage handles it.
+ */
+public class MessagePipeline {
+
+    /**
+     * The instance of the message pipeline.
+     */
+    private static MessagePipeline instance;
+    private FileConfiguration config = Dizcord.getInstance().getConfig();
+    /**
+     * The command prefix.
+     */
+    private String commandPrefix = config.getString("discord.command-prefix");
+    /**
+     * Every registered stage, sorted by priority.
+     */
+    private final List<RegisteredStage> stages = new ArrayList<>();
+    /**
+     * The stages grouped by priority. Replaced whenever a stage is registered, so it can be read without locking.
+     */
+    private volatile RegisteredStage[][] groups = new RegisteredStage[0][];
+
+    private MessagePipeline() {
+    }
+
+    /**
+     * The method for getting the message pipeline instance.
+     *
+     * @return The instance of the message pipeline.
+     */
+    public static MessagePipeline getInstance() {
+        return instance == null ? instance = new MessagePipeline() : instance;
+    }
+
+    /**
+     * Registers a stage. The stage can be configured under discord.pipeline.&lt;name&gt; in the config, where its
+     * priority can be changed, and it can be disabled everywhere or only in some channels.
+     *
+     * @param stage The stage to register
+     */
+    public synchronized void registerStage(MessageStage stage) {
+        String path = "discord.pipeline." + stage.getName();
+        if (!config.getBoolean(path + ".enabled", true)) {
+            Dizcord.getInstance().getLogger().log(Level.INFO, "The " + stage.getName() + " stage is disabled");
+            return;
+        }
+        TLongSet disabledChannels = new TLongHashSet();
+        for (Long channel : config.getLongList(path + ".disabled-channels")) {
+            disabledChannels.add(channel);
+        }
+        stages.add(new RegisteredStage(stage, config.getInt(path + ".priority", stage.getPriority()), disabledChannels));
+        stages.sort(Comparator.comparingInt(registered -> registered.priority));
+
+        List<RegisteredStage[]> grouped = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= stages.size(); i++) {
+            if (i == stages.size() || stages.get(i).priority != stages.get(start).priority) {
+                grouped.add(stages.subList(start, i).toArray(new RegisteredStage[0]));
+                start = i;
+            }
+        }
+        groups = grouped.toArray(new RegisteredStage[0][]);
+    }
+
+    /**
+     * Passes a chat message through every stage
+     *
+     * @param event The event of the message
+     * @return A Mono emitting {@link StageResult#DELETED} if a stage deleted the message, else {@link StageResult#CONTINUE}
+     */
+    public Mono<StageResult> process(MessageCreateEvent event) {
+        MessageContext context = new MessageContext(event, commandPrefix);
+        Mono<StageResult> result = Mono.just(StageResult.CONTINUE);
+        for (RegisteredStage[] group : groups) {
+            result = result.flatMap(previous -> previous == StageResult.DELETED ? Mono.just(previous) : process(group, context));
+        }
+        return result;
+    }
+
+    private Mono<StageResult> process(RegisteredStage[] group, MessageContext context) {
+        // A single stage runs on the thread the message arrived on, as there is nothing to run it alongside
+        if (group.length == 1) {
+            return Mono.fromCallable(() -> group[0].handle(context));
+        }
+        return Flux.fromArray(group)
+                .flatMap(stage -> Mono.fromCallable(() -> stage.handle(context)).subscribeOn(Schedulers.elastic()))
+                .reduce(StageResult.CONTINUE, (a, b) -> a == StageResult.DELETED ? a : b);
+    }
+
+    /**
+     * Gets the timers of every registered stage
+     *
+     * @return The timers, in the order the stages run
+     */
+    public synchronized List<StageTimer> getTimers() {
+        List<StageTimer> timers = new ArrayList<>();
+        for (RegisteredStage stage : stages) {
+            timers.add(stage.timer);
+        }
+        return timers;
+    }
+
+    private static class RegisteredStage {
+
+        private final MessageStage stage;
+        private final int priority;
+        private final TLongSet disabledChannels;
+        private final StageTimer timer;
+
+        private RegisteredStage(MessageStage stage, int priority, TLongSet disabledChannels) {
+            this.stage = stage;
+            this.priority = priority;
+            this.disabledChannels = disabledChannels;
+            this.timer = new StageTimer(stage.getName());
+        }
+
+        private StageResult handle(MessageContext context) {
+            if (disabledChannels.contains(context.getChannelId())) {
+                return StageResult.CONTINUE;
+            }
+            long start = System.nanoTime();
+            try {
+                return stage.handle(context);
+            } catch (Exception e) {
+                // One broken stage should not keep the message from the others
+                System.err.print("An error occurred in the " + stage.getName() + " stage. See stacktrace below for more information.");
+                e.printStackTrace();
+                return StageResult.CONTINUE;
+            } finally {
+                timer.record(System.nanoTime() - start);
+            }
+        }
+    }
+}
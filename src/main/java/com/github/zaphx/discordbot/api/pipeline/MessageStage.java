@@ -0,0 +1,32 @@
+package com.github.zaphx.discordbot.api.pipeline;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This is the interface that makes a class a stage of the {@link MessagePipeline}.
+ */
+public interface MessageStage {
+
+    /**
+     * Used to configure the stage. The stage is configured under discord.pipeline.&lt;name&gt; in the config.
+     * @return The name of the stage.
+     */
+    @NotNull
+    String getName();
+
+    /**
+     * Stages run from the lowest priority to the highest. Stages with the same priority are independent of each other
+     * and run at the same time. The priority in the config takes precedence over this one.
+     * @return The default priority of the stage.
+     */
+    int getPriority();
+
+    /**
+     * Handles a chat message. This will automatically be called for every message, unless the stage is disabled in the
+     * channel or an earlier stage deleted the message.
+     * @param context The message and what is known about it.
+     * @return {@link StageResult#DELETED} if the stage deleted the message, else {@link StageResult#CONTINUE}.
+     */
+    @NotNull
+    StageResult handle(MessageContext context);
+}
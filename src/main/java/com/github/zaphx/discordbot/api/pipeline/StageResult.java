@@ -0,0 +1,13 @@
+package com.github.zaphx.discordbot.api.pipeline;
+
+public enum StageResult {
+
+    /**
+     * This is returned if the message should be handled by the next stages
+     */
+    CONTINUE,
+    /**
+     * This is returned if the stage deleted the message. No stage after it will handle the message
+     */
+    DELETED
+}
@@ -0,0 +1,51 @@
+package com.github.zaphx.discordbot.api.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long a stage of the {@link MessagePipeline} takes to handle a message.
+ */
+public class StageTimer {
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    StageTimer(String name) {
+        this.name = name;
+    }
+
+    void record(long nanos) {
+        count.increment();
+        total.add(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The amount of messages the stage handled
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return The average time the stage took to handle a message, in nanoseconds
+     */
+    public long getAverage() {
+        long messages = count.sum();
+        return messages == 0 ? 0 : total.sum() / messages;
+    }
+
+    /**
+     * @return The longest time the stage took to handle a message, in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+}
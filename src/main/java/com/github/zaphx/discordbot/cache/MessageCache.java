@@ -0,0 +1,357 @@
+package com.github.zaphx.discordbot.cache;
+
+import com.github.zaphx.discordbot.sql.ArchivedMessage;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A bounded cache of the most recent messages. Every channel keeps its messages in a ring buffer, so the oldest
+ * message of a channel is dropped when the channel is full. When the cache as a whole is full, the oldest messages of
+ * the least recently used channel are dropped first.
+ * <p>
+ * Messages are stored in parallel primitive arrays, one slot per message, with the content kept as UTF-8 bytes.
+ * Slots and their content buffers are reused, so caching a message does not allocate in the common case.
+ * The creation time of a message is not stored, as it is part of its snowflake.
+ */
+public class MessageCache {
+
+    private static final int NO_SLOT = -1;
+    /**
+     * Content buffers are never smaller than this, so short messages can reuse each others buffers.
+     */
+    private static final int MIN_BUFFER = 64;
+
+    private final int messagesPerChannel;
+
+    private final long[] ids;
+    private final long[] authors;
+    private final long[] channelIds;
+    private final byte[][] contents;
+    private final int[] contentLengths;
+    private final int[] freeSlots;
+    private int freeCount;
+
+    private final TLongIntMap slots;
+    private final TLongObjectMap<ChannelRing> channels = new TLongObjectHashMap<>();
+    /**
+     * The last known name of every author with a cached message. Names are shared between all messages of an author.
+     */
+    private final TLongObjectMap<String> authorNames = new TLongObjectHashMap<>();
+    /**
+     * The amount of cached messages of every author, so a name is dropped together with the last message of its author.
+     */
+    private final TLongIntMap authorMessages = new TLongIntHashMap();
+    /**
+     * Ticks every time a channel is used. The channel with the lowest tick is the least recently used one.
+     */
+    private long clock;
+
+    /**
+     * Creates a new message cache. All slots are allocated up front.
+     *
+     * @param messagesPerChannel The maximum amount of messages kept per channel
+     * @param maxMessages        The maximum amount of messages kept across all channels. Must be at least the amount
+     *                           kept per channel, so a single channel can fill its ring
+     */
+    public MessageCache(int messagesPerChannel, int maxMessages) {
+        if (messagesPerChannel < 1 || maxMessages < 1) {
+            throw new IllegalArgumentException("The message cache must be able to hold at least one message");
+        }
+        if (maxMessages < messagesPerChannel) {
+            throw new IllegalArgumentException("The message cache must be able to hold at least " + messagesPerChannel
+                    + " messages, the amount kept per channel, but can only hold " + maxMessages);
+        }
+        this.messagesPerChannel = messagesPerChannel;
+        this.ids = new long[maxMessages];
+        this.authors = new long[maxMessages];
+        this.channelIds = new long[maxMessages];
+        this.contents = new byte[maxMessages][];
+        this.contentLengths = new int[maxMessages];
+        this.freeSlots = new int[maxMessages];
+        for (int i = 0; i < maxMessages; i++) {
+            freeSlots[i] = maxMessages - 1 - i;
+        }
+        this.freeCount = maxMessages;
+        this.slots = new TLongIntHashMap(maxMessages * 2, 0.5F, 0L, NO_SLOT);
+    }
+
+    /**
+     * Adds a message to the cache. If the message is already cached, its content is replaced.
+     *
+     * @param message The message to add
+     */
+    public synchronized void put(ArchivedMessage message) {
+        int slot = slots.get(message.getId());
+        if (slot != NO_SLOT) {
+            if (authors[slot] != message.getAuthor()) {
+                releaseAuthor(authors[slot]);
+                authors[slot] = message.getAuthor();
+                authorMessages.adjustOrPutValue(message.getAuthor(), 1, 1);
+            }
+            authorNames.put(message.getAuthor(), message.getAuthorName());
+            setContent(slot, message.getContent());
+            return;
+        }
+        ChannelRing ring = channels.get(message.getChannel());
+        if (ring == null) {
+            ring = new ChannelRing(messagesPerChannel);
+            channels.put(message.getChannel(), ring);
+        }
+        ring.lastUsed = ++clock;
+        if (ring.isFull()) {
+            free(ring.removeOldest());
+        }
+        while (freeCount == 0) {
+            evictFromLeastRecentlyUsedChannel();
+        }
+        // Eviction drops channels it empties, which can only be this one if it was the only channel with messages
+        if (channels.get(message.getChannel()) != ring) {
+            channels.put(message.getChannel(), ring);
+        }
+        slot = freeSlots[--freeCount];
+        ids[slot] = message.getId();
+        authors[slot] = message.getAuthor();
+        // Only after eviction, which could drop the name together with the last other message of this author
+        authorMessages.adjustOrPutValue(message.getAuthor(), 1, 1);
+        authorNames.put(message.getAuthor(), message.getAuthorName());
+        channelIds[slot] = message.getChannel();
+        setContent(slot, message.getContent());
+        slots.put(message.getId(), slot);
+        ring.add(message.getId());
+    }
+
+    /**
+     * Gets a message from the cache
+     *
+     * @param id The Id of the message
+     * @return The message, or null if it is not cached
+     */
+    public synchronized ArchivedMessage get(long id) {
+        int slot = slots.get(id);
+        if (slot == NO_SLOT) {
+            return null;
+        }
+        channels.get(channelIds[slot]).lastUsed = ++clock;
+        return read(slot);
+    }
+
+    /**
+     * Removes a message from the cache
+     *
+     * @param id The Id of the message
+     * @return The removed message, or null if it was not cached
+     */
+    public synchronized ArchivedMessage remove(long id) {
+        int slot = slots.get(id);
+        if (slot == NO_SLOT) {
+            return null;
+        }
+        ArchivedMessage message = read(slot);
+        ChannelRing ring = channels.get(channelIds[slot]);
+        if (ring != null) {
+            ring.remove(id);
+        }
+        free(id);
+        return message;
+    }
+
+    /**
+     * Changes the content of a cached message
+     *
+     * @param id      The Id of the message
+     * @param content The new content of the message
+     * @return The updated message, or null if it is not cached
+     */
+    public synchronized ArchivedMessage update(long id, String content) {
+        int slot = slots.get(id);
+        if (slot == NO_SLOT) {
+            return null;
+        }
+        setContent(slot, content);
+        return new ArchivedMessage(id, content, authors[slot], authorNames.get(authors[slot]), channelIds[slot]);
+    }
+
+    /**
+     * Removes every cached message of a channel
+     *
+     * @param channel The Id of the channel
+     */
+    public synchronized void removeChannel(long channel) {
+        ChannelRing ring = channels.remove(channel);
+        if (ring != null) {
+            while (!ring.isEmpty()) {
+                free(ring.removeOldest());
+            }
+        }
+    }
+
+    /**
+     * @return The amount of cached messages
+     */
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    private ArchivedMessage read(int slot) {
+        String content = new String(contents[slot], 0, contentLengths[slot], StandardCharsets.UTF_8);
+        return new ArchivedMessage(ids[slot], content, authors[slot], authorNames.get(authors[slot]), channelIds[slot]);
+    }
+
+    /**
+     * Frees the slot of a message, if it is still cached
+     *
+     * @param id The Id of the message
+     * @return True if the message was cached
+     */
+    private boolean free(long id) {
+        int slot = slots.remove(id);
+        if (slot == NO_SLOT) {
+            return false;
+        }
+        contentLengths[slot] = 0;
+        freeSlots[freeCount++] = slot;
+        releaseAuthor(authors[slot]);
+        return true;
+    }
+
+    /**
+     * Counts one cached message of an author less, dropping the name of the author once none are left
+     */
+    private void releaseAuthor(long author) {
+        if (authorMessages.adjustOrPutValue(author, -1, 0) <= 0) {
+            authorMessages.remove(author);
+            authorNames.remove(author);
+        }
+    }
+
+    private void evictFromLeastRecentlyUsedChannel() {
+        long leastRecentlyUsed = 0;
+        ChannelRing victim = null;
+        for (long channel : channels.keys()) {
+            ChannelRing ring = channels.get(channel);
+            if (!ring.isEmpty() && (victim == null || ring.lastUsed < victim.lastUsed)) {
+                victim = ring;
+                leastRecentlyUsed = channel;
+            }
+        }
+        if (victim == null) {
+            throw new IllegalStateException("The message cache is full, but no channel has any messages");
+        }
+        // Rings only hold Ids of cached messages, so this always frees a slot
+        free(victim.removeOldest());
+        if (victim.isEmpty()) {
+            channels.remove(leastRecentlyUsed);
+        }
+    }
+
+    /**
+     * Encodes a string as UTF-8 into the content buffer of a slot, without any intermediate allocations
+     */
+    private void setContent(int slot, String content) {
+        int length = utf8Length(content);
+        byte[] buffer = contents[slot];
+        // Grow buffers that are too small, and shrink buffers that are far too large, so one long message does not pin memory
+        if (buffer == null || buffer.length < length || (buffer.length > MIN_BUFFER && buffer.length > length * 4)) {
+            buffer = new byte[Math.max(MIN_BUFFER, length)];
+            contents[slot] = buffer;
+        }
+        int position = 0;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < content.length() && Character.isLowSurrogate(content.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, content.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates cannot be encoded, so they are replaced like the JDK encoder does
+                buffer[position++] = (byte) '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        contentLengths[slot] = position;
+    }
+
+    private static int utf8Length(String content) {
+        int length = 0;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < content.length() && Character.isLowSurrogate(content.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * A fixed size ring buffer of message Ids, oldest first
+     */
+    private static final class ChannelRing {
+
+        private final long[] ids;
+        private int head;
+        private int count;
+        private long lastUsed;
+
+        private ChannelRing(int capacity) {
+            this.ids = new long[capacity];
+        }
+
+        private boolean isFull() {
+            return count == ids.length;
+        }
+
+        private boolean isEmpty() {
+            return count == 0;
+        }
+
+        private void add(long id) {
+            ids[(head + count) % ids.length] = id;
+            count++;
+        }
+
+        private long removeOldest() {
+            long id = ids[head];
+            head = (head + 1) % ids.length;
+            count--;
+            return id;
+        }
+
+        /**
+         * Removes an Id from anywhere in the ring, moving the newer Ids back to close the gap
+         */
+        private void remove(long id) {
+            for (int i = 0; i < count; i++) {
+                if (ids[(head + i) % ids.length] == id) {
+                    for (int j = i; j < count - 1; j++) {
+                        ids[(head + j) % ids.length] = ids[(head + j + 1) % ids.length];
+                    }
+                    count--;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -1,10 +1,11 @@
 package com.github.zaphx.discordbot.discord;
 
 import com.github.zaphx.discordbot.Dizcord;
+import com.github.zaphx.discordbot.discord.log.LogPriority;
+import com.github.zaphx.discordbot.filter.ContentScan;
 import com.github.zaphx.discordbot.managers.ChannelManager;
 import com.github.zaphx.discordbot.managers.EmbedManager;
 import com.github.zaphx.discordbot.managers.MessageManager;
-import com.github.zaphx.discordbot.utilities.*;
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.Message;
 import discord4j.core.object.entity.MessageChannel;
@@ -28,30 +29,24 @@ public class AntiAdvertisement {
     /**
      * Checks and handles an advertisement. This means the bot will delete a message, if it contains either a Discord link or an IP.
      * @param event The event to look in
+     * @param scan  The scan of the message
+     * @return True if the message was deleted, else false
      */
-    public void checkAndHandle(MessageCreateEvent event) {
+    public boolean checkAndHandle(MessageCreateEvent event, ContentScan scan) {
         Message message = event.getMessage();
         User user = event.getMember().orElseThrow(NullPointerException::new);
-        if (matches(message)) {
+        if (scan.isAdvertisement()) {
             if (isAllowed(user)) {
                 allowedUsers.remove(user);
-                return;
+                return false;
             }
             message.delete().subscribe();
             channelManager.sendMessageToChannel(message.getChannelId(), message.getAuthor().orElseThrow(NullPointerException::new).getMention() + ", :eyes: Advertising isn't cool man...");
             // Send ad log
-            messageManager.log(embedManager.reportAdvertisementEmbed(event));
+            messageManager.log(embedManager.reportAdvertisementEmbed(event), LogPriority.CRITICAL);
+            return true;
         }
-    }
-
-    /**
-     * Checks if the message provided matches a ad pattern
-     * @param message Event to look in
-     * @return True if the message matches, else false
-     */
-    private boolean matches(Message message) {
-        return RegexUtils.isMatch(RegexPattern.SERVER_ADVERTISEMENT.getPattern(), message.getContent().orElse(""))
-                || RegexUtils.isMatch(RegexPattern.IP.getPattern(), message.getContent().orElse(""));
+        return false;
     }
 
     /**
@@ -0,0 +1,131 @@
+package com.github.zaphx.discordbot.discord;
+
+import com.github.zaphx.discordbot.Dizcord;
+import com.github.zaphx.discordbot.cache.MessageCache;
+import com.github.zaphx.discordbot.managers.DiscordClientManager;
+import com.github.zaphx.discordbot.managers.SQLManager;
+import com.github.zaphx.discordbot.sql.ArchivedMessage;
+import discord4j.core.DiscordClient;
+import discord4j.core.object.entity.Guild;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.TextChannel;
+import discord4j.core.object.util.Snowflake;
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import org.bukkit.configuration.file.FileConfiguration;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Archives the recent history of every text channel, so deleted messages can be logged.
+ * Only messages newer than the checkpoint of a channel are fetched, and several channels are fetched at once.
+ * Checkpoints are only moved by the backfill, as the history between a checkpoint and a live message is not archived
+ * until the backfill reaches it.
+ */
+public class MessageBackfill {
+
+    /**
+     * How many messages are written to the database at once. Discord hands out history 100 messages at a time
+     */
+    private static final int PAGE_SIZE = 100;
+
+    private final DiscordClientManager clientManager = DiscordClientManager.getInstance();
+    private final DiscordClient client = clientManager.getClient();
+    private final SQLManager sql = SQLManager.getInstance();
+    private final FileConfiguration config = Dizcord.getInstance().getConfig();
+    /**
+     * How many channels are fetched at the same time. Discord4J queues requests per rate limit bucket, so this only
+     * bounds how many channel histories are in flight at once.
+     */
+    private final int parallelism = Math.max(1, config.getInt("discord.backfill.parallelism", 4));
+    private final int messagesPerChannel = config.getInt("discord.backfill.messages-per-channel", 200);
+    private final MessageCache cache;
+
+    /**
+     * Creates a new backfill
+     *
+     * @param cache The cache archived messages are also added to
+     */
+    public MessageBackfill(MessageCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Archives the messages sent in every text channel of the guild since the last checkpoint.
+     * Each page of a channel is written to the database as a single batch, which also moves its checkpoint forward.
+     *
+     * @return The amount of messages archived
+     */
+    public Mono<Long> run() {
+        return sql.getCheckpoints()
+                .defaultIfEmpty(new TLongLongHashMap())
+                .flatMap(checkpoints -> client.getGuildById(clientManager.GUILD_SNOWFLAKE)
+                        .flatMapMany(Guild::getChannels)
+                        .ofType(TextChannel.class)
+                        .flatMap(channel -> backfill(channel, checkpoints), parallelism)
+                        .reduce(0L, Long::sum));
+    }
+
+    /**
+     * Archives the messages sent in a channel since its checkpoint. The history is read forward from the checkpoint
+     * and written a page at a time up to the last message of the channel, however long the gap is. Whatever is archived
+     * before a failure is kept, and the next run carries on from there. A channel without a checkpoint only archives
+     * its most recent messages.
+     *
+     * @param channel     The channel to archive
+     * @param checkpoints The last archived message of every channel
+     * @return The amount of messages archived
+     */
+    private Mono<Long> backfill(TextChannel channel, TLongLongMap checkpoints) {
+        long channelId = channel.getId().asLong();
+        long checkpoint = checkpoints.get(channelId);
+        // Nothing has been sent since the checkpoint, so there is no reason to ask Discord
+        long lastMessage = channel.getLastMessageId().map(Snowflake::asLong).orElse(0L);
+        if (lastMessage <= checkpoint) {
+            return Mono.just(0L);
+        }
+        Mono<Long> archived;
+        if (checkpoint == 0) {
+            archived = channel.getMessagesBefore(Snowflake.of(Instant.now()))
+                    .take(messagesPerChannel)
+                    .collectList()
+                    // Pages before a message are fetched newest first
+                    .flatMap(page -> page.isEmpty() ? Mono.just(0L) : write(channelId, page, page.get(0).getId().asLong(), true));
+        } else {
+            // Messages sent after the backfill started are archived live, so reading stops at the last message
+            archived = channel.getMessagesAfter(Snowflake.of(checkpoint))
+                    .takeWhile(message -> message.getId().asLong() <= lastMessage)
+                    .buffer(PAGE_SIZE)
+                    // Pages are written one after another, so the checkpoint never passes a page that was not written
+                    .concatMap(page -> write(channelId, page, page.get(page.size() - 1).getId().asLong(), false))
+                    .reduce(0L, Long::sum);
+        }
+        return archived.onErrorResume(e -> {
+            Dizcord.getInstance().getLogger().log(Level.WARNING, "Could not archive the history of #" + channel.getName(), e);
+            return Mono.just(0L);
+        });
+    }
+
+    /**
+     * Archives a page of history and moves the checkpoint of the channel to its last message
+     *
+     * @param newestFirst True if the page is ordered newest first, else oldest first
+     */
+    private Mono<Long> write(long channelId, List<Message> page, long last, boolean newestFirst) {
+        List<ArchivedMessage> messages = new ArrayList<>(page.size());
+        for (int i = 0; i < page.size(); i++) {
+            // The cache should drop the oldest messages first
+            Message message = page.get(newestFirst ? page.size() - 1 - i : i);
+            if (message.getAuthor().isPresent()) {
+                ArchivedMessage archived = ArchivedMessage.of(message);
+                cache.put(archived);
+                messages.add(archived);
+            }
+        }
+        return sql.insertMessages(messages, channelId, last).thenReturn((long) messages.size());
+    }
+}
@@ -8,7 +8,7 @@ import discord4j.core.object.entity.MessageChannel;
 import discord4j.core.object.entity.User;
 import net.md_5.bungee.api.chat.ClickEvent;
 import net.md_5.bungee.api.chat.ComponentBuilder;
-import net.md_5.bungee.api.chat.TextComponent;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
 import static org.bukkit.ChatColor.*;
@@ -29,17 +29,28 @@ public class AccountLink implements CommandListener {
         Player player = Dizcord.getInstance().getServer().getPlayer(username);
         if (player != null) {
             int hash = Math.abs(player.getUniqueId().toString().hashCode() << sender.getId().asString().hashCode());
-            if (sql.isUserLinked(sender.getId().asString(), player.getUniqueId())) {
-                destination.createMessage(m -> m.setEmbed(embedManager.userAlreadyLinked())).subscribe();
-                return CommandExitCode.SUCCESS;
-            }
-            messageManager.hashes.put(hash, player);
-            messageManager.discord.put(hash, sender.asMember(clientManager.GUILD_SNOWFLAKE).block());
-            TextComponent message = new TextComponent(YELLOW + "/dizcord link " + hash);
-            message.setClickEvent(new ClickEvent(ClickEvent.Action.OPEN_URL, "/dizcord link " + hash));
-            player.sendMessage(GREEN + "Someone is trying to link their Discord account to this account!\nIf this is you, type the following command: ");
-            player.spigot().sendMessage(new ComponentBuilder(YELLOW + "/dizcord link " + hash).event(new ClickEvent(ClickEvent.Action.SUGGEST_COMMAND, "/dizcord link " + hash)).create());
-            messageManager.log(embedManager.userLinked(sender, player.getName()));
+            sql.isUserLinked(sender.getId().asLong(), player.getUniqueId()).subscribe(linked -> {
+                if (linked) {
+                    destination.createMessage(m -> m.setEmbed(embedManager.userAlreadyLinked())).subscribe();
+                    return;
+                }
+                // The hashes are read by the link command, and players may only be used on the main thread
+                Bukkit.getScheduler().runTask(Dizcord.getInstance(), () -> {
+                    if (!player.isOnline()) {
+                        destination.createMessage(m -> m.setEmbed(embedManager.noPlayerEmbed(username))).subscribe();
+                        return;
+                    }
+                    messageManager.hashes.put(hash, player);
+                    messageManager.discord.put(hash, sender.getId().asLong());
+                    player.sendMessage(GREEN + "Someone is trying to link their Discord account to this account!\nIf this is you, type the following command: ");
+                    player.spigot().sendMessage(new ComponentBuilder(YELLOW + "/dizcord link " + hash).event(new ClickEvent(ClickEvent.Action.SUGGEST_COMMAND, "/dizcord link " + hash)).create());
+                    messageManager.log(embedManager.userLinked(sender, player.getName()));
+                });
+            }, e -> {
+                System.err.print("An error occurred while checking if a user is linked. See stacktrace below for more information.");
+                e.printStackTrace();
+                destination.createMessage(m -> m.setEmbed(embedManager.exception())).subscribe();
+            });
         } else {
             destination.createMessage(m->m.setEmbed(embedManager.noPlayerEmbed(username))).subscribe();
         }
@@ -15,8 +15,7 @@ public class AccountUnlink implements CommandListener {
 
     @Override
     public CommandExitCode onCommand(User sender, String command, List<String> args, MessageChannel destination, MessageCreateEvent event) {
-        if (args.size() == 1 && sender.asMember(event.getGuildId().orElseThrow(NullPointerException::new)).blockOptional().orElseThrow(NullPointerException::new)
-                .getBasePermissions().blockOptional().orElseThrow(NullPointerException::new).contains(Permission.ADMINISTRATOR)) {
+        if (args.size() == 1 && commandHandler.userHasPermission(event, Permission.ADMINISTRATOR)) {
             if (args.get(0).matches(RegexPattern.USER.toString())) {
                 long id;
                 try {
@@ -24,30 +23,31 @@ public class AccountUnlink implements CommandListener {
                 } catch (NumberFormatException ex) {
                     return CommandExitCode.INVALID_SYNTAX;
                 }
-                if (sql.isUserLinked(args.get(0))) {
-                    sql.executeStatementAndPost("DELETE FROM %slinks WHERE discord = %s", sql.prefix, id);
-                    destination.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(embedManager.userUnlinked())).subscribe();
+                sql.isUserLinked(id).subscribe(linked -> {
+                    if (linked) {
+                        sql.deleteLink(id).subscribe();
+                        destination.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(embedManager.userUnlinked())).subscribe();
+                    } else {
+                        destination.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(embedManager.userNotLinked())).subscribe();
+                    }
                     messageManager.log(embedManager.userUnlinked());
-                    return CommandExitCode.SUCCESS;
-                } else {
-                    destination.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(embedManager.userNotLinked())).subscribe();
-                    messageManager.log(embedManager.userUnlinked());
-                    return CommandExitCode.SUCCESS;
-                }
+                });
+                return CommandExitCode.SUCCESS;
 
             } else {
                 return CommandExitCode.INVALID_SYNTAX;
             }
         } else if (args.size() == 0) {
-            String id = sender.getId().asString();
-            if (sql.isUserLinked(id)) {
-                sql.executeStatementAndPost("DELETE FROM %slinks WHERE discord = %s", sql.prefix, id);
-                destination.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(embedManager.selfUnlinked())).subscribe();
-                return CommandExitCode.SUCCESS;
-            } else {
-                destination.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(embedManager.selfNotLinked())).subscribe();
-                return CommandExitCode.SUCCESS;
-            }
+            long id = sender.getId().asLong();
+            sql.isUserLinked(id).subscribe(linked -> {
+                if (linked) {
+                    sql.deleteLink(id).subscribe();
+                    destination.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(embedManager.selfUnlinked())).subscribe();
+                } else {
+                    destination.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(embedManager.selfNotLinked())).subscribe();
+                }
+            });
+            return CommandExitCode.SUCCESS;
         } else {
             return CommandExitCode.INSUFFICIENT_PERMISSIONS;
         }
@@ -2,35 +2,35 @@ package com.github.zaphx.discordbot.discord.command;
 
 import com.github.zaphx.discordbot.api.commandhandler.CommandExitCode;
 import com.github.zaphx.discordbot.api.commandhandler.CommandListener;
+import com.github.zaphx.discordbot.managers.RoleJobManager;
+import com.github.zaphx.discordbot.managers.RoleSnapshot;
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.Member;
 import discord4j.core.object.entity.MessageChannel;
-import discord4j.core.object.entity.Role;
 import discord4j.core.object.entity.User;
 import discord4j.core.object.util.Permission;
 import org.jetbrains.annotations.NotNull;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
-import java.util.Objects;
 
 public class Event implements CommandListener {
     @Override
     public CommandExitCode onCommand(User sender, String command, List<String> args, MessageChannel destination, MessageCreateEvent event) {
         String name = "Event";
-        Role role;
-        role = clientManager.getClient().getRoleById(clientManager.GUILD_SNOWFLAKE,rolesManager.getRole(name)).block();
+        RoleSnapshot role = rolesManager.getRoleByName(name);
         if (args.size() != 1) {
             return CommandExitCode.INVALID_SYNTAX;
         }
-        Member member = sender.asMember(clientManager.GUILD_SNOWFLAKE).block();
+        Member member = event.getMember().orElse(null);
         if (role != null) {
             if (member == null) {
                 destination.createMessage(":x: Could not resolve member").subscribe();
                 return CommandExitCode.ERROR;
             }
-            switch (args.get(0)) {
+            switch (args.get(0).toLowerCase()) {
                 case "join":
-                    if (!member.getRoles().hasElement(role).block()) {
+                    if (!member.getRoleIds().contains(role.getId())) {
                         member.addRole(role.getId()).subscribe();
                         destination.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(embedManager.roleJoinEmbed(name))).subscribe();
                     } else {
@@ -38,7 +38,7 @@ public class Event implements CommandListener {
                     }
                     break;
                 case "leave":
-                    if (member.getRoles().hasElement(role).block()) {
+                    if (member.getRoleIds().contains(role.getId())) {
                         member.removeRole(role.getId()).subscribe();
                         destination.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(embedManager.roleLeaveEmbed(name))).subscribe();
                     } else {
@@ -46,19 +46,19 @@ public class Event implements CommandListener {
                     }
                     break;
                 case "on":
-                    role.edit(spec -> spec.setMentionable(true)).subscribe();
+                    rolesManager.editRole(role.getId(), spec -> spec.setMentionable(true)).subscribe();
                     destination.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(embedManager.roleMentionableChanged(name, true))).subscribe();
                     break;
                 case "off":
-                    role.edit(spec -> spec.setMentionable(false)).subscribe();
+                    rolesManager.editRole(role.getId(), spec -> spec.setMentionable(false)).subscribe();
                     destination.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(embedManager.roleMentionableChanged(name, false))).subscribe();
                     break;
                 case "assignall":
-                    if (Objects.requireNonNull(member.getBasePermissions().block()).contains(Permission.ADMINISTRATOR)) {
-                        for (Member user : Objects.requireNonNull(Objects.requireNonNull(event.getGuild().block()).getMembers().collectList().block())) {
-                            user.addRole(role.getId()).subscribe();
-                        }
-                        destination.createMessage(m -> m.setEmbed(embedManager.roleAddedToEveryone(name)));
+                    if (commandHandler.userHasPermission(event, Permission.ADMINISTRATOR)) {
+                        // The job reports its progress in this channel
+                        RoleJobManager.getInstance().start(role.getId().asLong(), true, destination.getId().asLong())
+                                .switchIfEmpty(destination.createMessage(":x: The role could not be added to everyone.").then(Mono.empty()))
+                                .subscribe();
                     } else {
                         return CommandExitCode.INSUFFICIENT_PERMISSIONS;
                     }
@@ -1,5 +1,6 @@
 package com.github.zaphx.discordbot.discord.command;
 
+import com.github.zaphx.discordbot.api.commandhandler.AsyncCommandListener;
 import com.github.zaphx.discordbot.api.commandhandler.CommandExitCode;
 import com.github.zaphx.discordbot.api.commandhandler.CommandHandler;
 import com.github.zaphx.discordbot.api.commandhandler.CommandListener;
@@ -20,27 +21,28 @@ public class Help implements CommandListener {
     @Override
     public CommandExitCode onCommand(User sender, String command, List<String> args, MessageChannel destination, MessageCreateEvent event) {
         event.getMessage().delete().subscribe();
-        TMap<String, Object> commands = commandHandler.getCommandMap();
+        TMap<String, AsyncCommandListener> commands = commandHandler.getCommandMap();
 
         if (args.size() == 0) {
 
             sender.getPrivateChannel().subscribe(channel -> channel.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(spec -> {
                 spec.setTitle("Full help list").setTimestamp(Instant.now()).setColor(new Color(133, 150, 211));
                 for (TMap.Entry entry : commands.entrySet()) {
-                    spec.addField(entry.getKey().toString(), ((CommandListener) entry.getValue()).getCommandDescription()
-                            + "\n" + ((CommandListener) entry.getValue()).getCommandUsage(), false);
+                    spec.addField(entry.getKey().toString(), ((AsyncCommandListener) entry.getValue()).getCommandDescription()
+                            + "\n" + ((AsyncCommandListener) entry.getValue()).getCommandUsage(), false);
                 }
             })));
             return CommandExitCode.SUCCESS;
         } else if (args.size() == 1){
-            boolean isCommand = commands.get(args.get(0)) != null;
+            String name = args.get(0).toLowerCase();
+            boolean isCommand = commands.get(name) != null;
             if (isCommand) {
 
                 sender.getPrivateChannel().subscribe(channel -> channel.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(spec -> {
                     spec.setTimestamp(Instant.now()).setColor(new Color(133, 150, 211))
-                            .setTitle("Command help for "+ args.get(0))
-                            .setDescription(((CommandListener) commands.get(args.get(0))).getCommandDescription())
-                            .addField("Usage", ((CommandListener) commands.get(args.get(0))).getCommandUsage(), false);
+                            .setTitle("Command help for "+ name)
+                            .setDescription(commands.get(name).getCommandDescription())
+                            .addField("Usage", commands.get(name).getCommandUsage(), false);
                 })));
                 return CommandExitCode.SUCCESS;
             } else {
@@ -3,21 +3,21 @@ package com.github.zaphx.discordbot.discord.command;
 import com.github.zaphx.discordbot.Dizcord;
 import com.github.zaphx.discordbot.api.commandhandler.CommandExitCode;
 import com.github.zaphx.discordbot.api.commandhandler.CommandListener;
+import com.github.zaphx.discordbot.discord.log.LogPriority;
+import com.github.zaphx.discordbot.sql.ActiveMute;
 import com.github.zaphx.discordbot.utilities.DateUtils;
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.MessageChannel;
-import discord4j.core.object.entity.Role;
 import discord4j.core.object.entity.User;
 import discord4j.core.object.util.Permission;
 import discord4j.core.object.util.Snowflake;
 import org.jetbrains.annotations.NotNull;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
 public class Mute implements CommandListener {
 
-    private Role mute;
-
     @Override
     public CommandExitCode onCommand(User sender, String command, List<String> args, MessageChannel destination, MessageCreateEvent event) {
         event.getMessage().delete().subscribe();
@@ -35,9 +35,9 @@ public class Mute implements CommandListener {
                     String expiry = DateUtils.formatDateDiff(timestamp);
                     String reason = DateUtils.removeTimePattern(time);
 
-                    clientManager.getClient().getRoleById(clientManager.GUILD_SNOWFLAKE,Snowflake.of(Dizcord.getInstance().getConfig().getLong("discord.voice-mute-role"))).subscribe(r -> mute = r);
+                    Snowflake role = Snowflake.of(Dizcord.getInstance().getConfig().getLong("discord.voice-mute-role"));
 
-                    event.getMessage().getUserMentions().subscribe(u -> handleMute(sender, u, timestamp, expiry, reason)); //.getMember().getMentions().get(0);
+                    event.getMessage().getUserMentions().subscribe(u -> handleMute(sender, u, role, timestamp, expiry, reason)); //.getMember().getMentions().get(0);
                     return CommandExitCode.SUCCESS;
                 } catch (Exception e) {
                     commandHandler.handleException(e);
@@ -50,9 +50,9 @@ public class Mute implements CommandListener {
                     String expiry = DateUtils.formatDateDiff(timestamp);
                     String reason = DateUtils.removeTimePattern(time);
 
-                    clientManager.getClient().getRoleById(clientManager.GUILD_SNOWFLAKE,Snowflake.of(Dizcord.getInstance().getConfig().getLong("discord.mute-role"))).subscribe(r -> mute = r);
+                    Snowflake role = Snowflake.of(Dizcord.getInstance().getConfig().getLong("discord.mute-role"));
 
-                    event.getMessage().getUserMentions().subscribe(u -> handleMute(sender, u, timestamp, expiry, reason));
+                    event.getMessage().getUserMentions().subscribe(u -> handleMute(sender, u, role, timestamp, expiry, reason));
                     return CommandExitCode.SUCCESS;
                 } catch (Exception e) {
                     commandHandler.handleException(e);
@@ -64,21 +64,20 @@ public class Mute implements CommandListener {
     }
 
     @NotNull
-    private void handleMute(User sender, User target, long timestamp, String expiry, String reason) {
-        target.asMember(clientManager.GUILD_SNOWFLAKE).subscribe(member -> member.addRole(mute.getId()));
-        sql.executeStatementAndPost("INSERT INTO %smutes (id, muter, expires, type) VALUES ('%s','%s','%s','%s')",
-                Dizcord.getInstance().getConfig().getString("sql.prefix"),
-                target.getId().asString(),
-                sender.getId().asString(),
-                timestamp,
-                mute.getId().asString());
-        messageManager.log(embedManager.logMuteEmbed(reason,expiry,sender, target));
-        channelManager.sendMessageToChannel(target.getPrivateChannel().block(), embedManager.muteEmbed(reason, expiry, sender));
+    private void handleMute(User sender, User target, Snowflake role, long timestamp, String expiry, String reason) {
+        target.asMember(clientManager.GUILD_SNOWFLAKE).flatMap(member -> member.addRole(role, reason)).subscribe();
+        // The mute is lifted at the exact time it expires, once the database has handed out its ticket
+        Mono.zip(sql.insertMute(target.getId().asLong(), sender.getId().asLong(), timestamp, role.asLong()), target.getPrivateChannel())
+                .subscribe(t -> {
+                    muteManager.schedule(new ActiveMute(t.getT1(), target.getId().asLong(), role.asLong(), timestamp));
+                    messageManager.log(embedManager.logMuteEmbed(reason, expiry, t.getT1(), sender, target), LogPriority.CRITICAL);
+                    channelManager.sendMessageToChannel(t.getT2(), embedManager.muteEmbed(reason, expiry, t.getT1(), sender));
+                });
     }
 
     @Override
     public @NotNull String getCommandDescription() {
-        return "Allows a staff member to mute a user for a certain amount of time. Please note that the mute expiration is checked every hour.";
+        return "Allows a staff member to mute a user for a certain amount of time. The user is unmuted as soon as the mute expires.";
     }
 
     @Override
@@ -1,8 +1,8 @@
 package com.github.zaphx.discordbot.discord.command;
 
-import com.github.zaphx.discordbot.Dizcord;
 import com.github.zaphx.discordbot.api.commandhandler.CommandExitCode;
 import com.github.zaphx.discordbot.api.commandhandler.CommandListener;
+import com.github.zaphx.discordbot.discord.log.LogPriority;
 import com.github.zaphx.discordbot.utilities.RegexPattern;
 import com.github.zaphx.discordbot.utilities.RegexUtils;
 import discord4j.core.event.domain.message.MessageCreateEvent;
@@ -10,6 +10,7 @@ import discord4j.core.object.entity.MessageChannel;
 import discord4j.core.object.entity.User;
 import discord4j.core.object.util.Permission;
 import org.jetbrains.annotations.NotNull;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
@@ -36,10 +37,14 @@ public class Warn implements CommandListener {
             } else {
                 return CommandExitCode.INVALID_SYNTAX;
             }
-            String sqlprefix = Dizcord.getInstance().getConfig().getString("sql.prefix");
-            sql.executeStatementAndPost("INSERT INTO %s" + "%s (id, reason, warnee) VALUES ('%s','%s','%s')", sqlprefix, "warnings", warned.getId().asString(), reason, warned.getId().asString());
-            messageManager.log(embedManager.warningToChannel(warned, sender, reason, event.getGuild().block(),destination));
-            channelManager.sendMessageToChannel(warned.getPrivateChannel().block(), embedManager.warningToUser(warned, sender, reason, event.getGuild()));
+            // The ticket is the key the database generated for this warning
+            Mono.zip(sql.insertWarning(warned.getId().asLong(), reason, sender.getId().asLong()),
+                    event.getGuild(),
+                    warned.getPrivateChannel())
+                    .subscribe(t -> {
+                        messageManager.log(embedManager.warningToChannel(warned, sender, reason, t.getT1(), t.getT2(), destination), LogPriority.CRITICAL);
+                        channelManager.sendMessageToChannel(t.getT3(), embedManager.warningToUser(warned, sender, reason, t.getT1(), event.getGuild()));
+                    });
             return CommandExitCode.SUCCESS;
         }
         return CommandExitCode.INSUFFICIENT_PERMISSIONS;
@@ -7,6 +7,7 @@ import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.MessageChannel;
 import discord4j.core.object.entity.User;
 import org.jetbrains.annotations.NotNull;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.List;
 import java.util.UUID;
@@ -19,13 +20,13 @@ public class WhoIs implements CommandListener {
 
         if (args.size() == 1 && event.getMessage().getUserMentions().toStream().count() == 1) {
             User lookupUser = event.getMessage().getUserMentions().toStream().findFirst().get();
-            if (sql.isUserLinked(lookupUser.getId().asString())) {
-                String uuid = sql.getPlayerFromLink(lookupUser.asMember(clientManager.GUILD_SNOWFLAKE).block());
-                String name = UUIDFetcher.getName(UUID.fromString(uuid));
-                destination.createMessage(spec -> spec.setEmbed(embedManager.whoIsEmbed(lookupUser, name))).subscribe();
-            } else {
-                destination.createMessage(spec -> spec.setEmbed(embedManager.userNotLinked())).subscribe();
-            }
+            sql.getPlayerFromLink(lookupUser)
+                    // Looking up the name of the player is a blocking web request
+                    .publishOn(Schedulers.elastic())
+                    .map(uuid -> embedManager.whoIsEmbed(lookupUser, UUIDFetcher.getName(UUID.fromString(uuid))))
+                    .defaultIfEmpty(embedManager.userNotLinked())
+                    .flatMap(embed -> destination.createMessage(spec -> spec.setEmbed(embed)))
+                    .subscribe();
 
             return CommandExitCode.SUCCESS;
         } else return CommandExitCode.INVALID_SYNTAX;
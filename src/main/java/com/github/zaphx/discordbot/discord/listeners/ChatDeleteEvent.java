@@ -4,8 +4,8 @@ import com.github.zaphx.discordbot.managers.DiscordClientManager;
 import com.github.zaphx.discordbot.managers.EmbedManager;
 import com.github.zaphx.discordbot.managers.MessageManager;
 import discord4j.core.event.domain.message.MessageDeleteEvent;
+import discord4j.core.object.entity.Member;
 import discord4j.core.object.util.Snowflake;
-import gnu.trove.map.hash.THashMap;
 
 public class ChatDeleteEvent {
 
@@ -14,13 +14,15 @@ public class ChatDeleteEvent {
     private DiscordClientManager clientManager = DiscordClientManager.getInstance();
 
     public void onMessageDelete(final MessageDeleteEvent event) {
-        THashMap<String, String> map = messageManager.getDeletedMessage(event.getMessageId().asString());
-        if (map.get("content").toLowerCase().startsWith("ob!")) return;
-        clientManager.getClient().getMemberById(
-                clientManager.GUILD_SNOWFLAKE,
-                Snowflake.of(map.get("author")))
-                .subscribe(member -> {
-                    if (member.isBot()) messageManager.auditlog(em.messageDeleteEmbed(map));
-                });
+        messageManager.getDeletedMessage(event.getMessageId().asString())
+                // The message was sent before it could be archived
+                .filter(map -> !map.isEmpty())
+                .filter(map -> !map.get("content").toLowerCase().startsWith("ob!"))
+                .flatMap(map -> clientManager.getClient().getMemberById(
+                        clientManager.GUILD_SNOWFLAKE,
+                        Snowflake.of(map.get("author")))
+                        .filter(Member::isBot)
+                        .map(member -> map))
+                .subscribe(map -> messageManager.auditlog(em.messageDeleteEmbed(map)));
     }
 }
@@ -1,16 +1,19 @@
 package com.github.zaphx.discordbot.discord.listeners;
 
 import com.github.zaphx.discordbot.managers.ChannelManager;
+import com.github.zaphx.discordbot.managers.MessageManager;
 import discord4j.core.event.domain.channel.TextChannelDeleteEvent;
 import reactor.core.publisher.Mono;
 
 public class OnChannelDeleteEvent {
 
     private ChannelManager channelManager = ChannelManager.getInstance();
+    private MessageManager messageManager = MessageManager.getInstance();
 
     public void onChannelDelete(final TextChannelDeleteEvent event) {
 
         channelManager.removeChannel(event);
+        messageManager.removeChannel(event.getChannel().getId().asLong());
 
     }
 
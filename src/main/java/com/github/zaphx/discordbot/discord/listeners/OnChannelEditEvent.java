@@ -0,0 +1,14 @@
+package com.github.zaphx.discordbot.discord.listeners;
+
+import com.github.zaphx.discordbot.managers.ChannelManager;
+import discord4j.core.event.domain.channel.TextChannelUpdateEvent;
+
+public class OnChannelEditEvent {
+
+    private ChannelManager channelManager = ChannelManager.getInstance();
+
+    public void onChannelEdit(TextChannelUpdateEvent event) {
+        channelManager.updateChannel(event);
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.github.zaphx.discordbot.discord.listeners;
+
+import com.github.zaphx.discordbot.managers.PermissionManager;
+import discord4j.core.event.domain.guild.GuildUpdateEvent;
+
+public class OnGuildUpdateEvent {
+
+    private PermissionManager permissionManager = PermissionManager.getInstance();
+
+    public void onGuildUpdate(GuildUpdateEvent event) {
+        permissionManager.updateGuild(event.getCurrent());
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.github.zaphx.discordbot.discord.listeners;
+
+import com.github.zaphx.discordbot.managers.PermissionManager;
+import discord4j.core.event.domain.guild.MemberUpdateEvent;
+
+public class OnMemberUpdateEvent {
+
+    private PermissionManager permissionManager = PermissionManager.getInstance();
+
+    public void onMemberUpdate(MemberUpdateEvent event) {
+        permissionManager.updateMember(event.getMemberId().asLong(), event.getCurrentRoles());
+    }
+
+}
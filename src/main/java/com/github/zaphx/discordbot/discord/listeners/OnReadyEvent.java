@@ -3,7 +3,6 @@ package com.github.zaphx.discordbot.discord.listeners;
 import com.github.zaphx.discordbot.Dizcord;
 import com.github.zaphx.discordbot.managers.*;
 import discord4j.core.event.domain.lifecycle.ReadyEvent;
-import org.bukkit.Bukkit;
 import reactor.core.publisher.Mono;
 
 import java.util.logging.Level;
@@ -13,22 +12,23 @@ public class OnReadyEvent {
     private final MessageManager messageManager = MessageManager.getInstance();
     private final InviteManager inviteManager = InviteManager.getInstance();
     private final RolesManager rolesManager = RolesManager.getInstance();
-    private final SQLManager sql = SQLManager.getInstance();
+    private final MuteManager muteManager = MuteManager.getInstance();
+    private final RoleJobManager roleJobManager = RoleJobManager.getInstance();
     private final ChannelManager channelManager = ChannelManager.getInstance();
-    private final long interval = Dizcord.getInstance().getConfig().getLong("discord.mute-check-interval", 60);
+    private final PermissionManager permissionManager = PermissionManager.getInstance();
 
 
     public void onReady() {
         messageManager.setMessages();
-        inviteManager.update();
-        Dizcord.getInstance().getLogger().log(Level.INFO, "Checking for any mutes.");
-        Bukkit.getScheduler().runTaskAsynchronously(Dizcord.getInstance(), sql::unmute);
-        Dizcord.getInstance().getLogger().log(Level.INFO, "Setting mute check interval to " + interval + " minutes");
-        Bukkit.getScheduler().runTaskTimerAsynchronously(Dizcord.getInstance(), sql::unmute, 20 * 60L * interval, 20 * 60L * interval);
+        inviteManager.update().subscribe(count -> Dizcord.getInstance().getLogger().log(Level.INFO, "Found " + count + " invite(s). They are now registered"));
+        Dizcord.getInstance().getLogger().log(Level.INFO, "Loading active mutes.");
+        muteManager.load().subscribe(count -> Dizcord.getInstance().getLogger().log(Level.INFO, "Loaded " + count + " active mute(s)"));
+        roleJobManager.load().filter(count -> count > 0).subscribe(count -> Dizcord.getInstance().getLogger().log(Level.INFO, "Resumed " + count + " role job(s)"));
         Dizcord.getInstance().getLog().info("Mapping current channels");
-        channelManager.mapChannels();
+        channelManager.mapChannels().subscribe(count -> Dizcord.getInstance().getLogger().log(Level.INFO, "Mapped " + count + " channel(s)"));
+        permissionManager.load().subscribe();
         Dizcord.getInstance().getLog().info("Mapping current roles");
-        rolesManager.mapRoles();
+        rolesManager.mapRoles().subscribe(count -> Dizcord.getInstance().getLogger().log(Level.INFO, "Mapped " + count + " role(s)"));
         Dizcord.getInstance().getLog().info("Ready");
     }
 }
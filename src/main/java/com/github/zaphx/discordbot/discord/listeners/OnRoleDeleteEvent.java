@@ -9,7 +9,7 @@ public class OnRoleDeleteEvent {
     RolesManager rolesManager = RolesManager.getInstance();
 
     public void onDeleteEvent(RoleDeleteEvent event) {
-        rolesManager.removeRole(event.getRole().orElse(null));
+        rolesManager.removeRole(event.getRoleId().asLong());
     }
 
 }
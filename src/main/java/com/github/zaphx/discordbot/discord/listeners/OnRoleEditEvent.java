@@ -10,8 +10,7 @@ public class OnRoleEditEvent {
 
     public void onEditEvent(RoleUpdateEvent event) {
 
-        rolesManager.removeRole(event.getOld().orElse(null));
-        rolesManager.addRole(event.getCurrent());
+        rolesManager.updateRole(event);
     }
 
 }
@@ -1,6 +1,7 @@
 package com.github.zaphx.discordbot.discord.listeners;
 
 import com.github.zaphx.discordbot.Dizcord;
+import com.github.zaphx.discordbot.discord.log.LogPriority;
 import com.github.zaphx.discordbot.managers.DiscordClientManager;
 import com.github.zaphx.discordbot.managers.EmbedManager;
 import com.github.zaphx.discordbot.managers.InternalsManager;
@@ -23,7 +24,7 @@ public class OnUserBanEvent {
             Bukkit.getScheduler().runTaskLaterAsynchronously(Dizcord.getInstance(), () -> {
                 Member banner = internalsManager.getBanner(event);
                 String reason = internalsManager.getReason(event);
-                messageManager.log(embedManager.banToChannel(((Member) event.getUser()),banner,reason));
+                messageManager.log(embedManager.banToChannel(((Member) event.getUser()),banner,reason), LogPriority.CRITICAL);
             }, 40L);
         }
     }
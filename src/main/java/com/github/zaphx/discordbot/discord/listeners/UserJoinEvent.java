@@ -1,5 +1,6 @@
 package com.github.zaphx.discordbot.discord.listeners;
 
+import com.github.zaphx.discordbot.discord.raid.RaidDetector;
 import com.github.zaphx.discordbot.managers.*;
 import discord4j.core.event.domain.guild.MemberJoinEvent;
 import reactor.core.publisher.Mono;
@@ -11,11 +12,20 @@ public class UserJoinEvent {
     private InviteManager inviteManager = InviteManager.getInstance();
     private EmbedManager embedManager = EmbedManager.getInstance();
     private MessageManager messageManager = MessageManager.getInstance();
+    private RaidDetector raidDetector = RaidDetector.getInstance();
 
 
     public UserJoinEvent() {}
 
     public void onUserJoinEvent(final MemberJoinEvent event) {
-        messageManager.auditlog(embedManager.joinEmbed(inviteManager.getInvite(), event.getMember()));
+        raidDetector.onJoin(event.getMember());
+        // Members that join together share a single fetch of the invites
+        inviteManager.getInvite()
+                .doOnNext(invite -> raidDetector.onInvite(invite.getCode()))
+                .map(invite -> embedManager.joinEmbed(invite, event.getMember()))
+                .defaultIfEmpty(embedManager.joinEmbed(null, event.getMember()))
+                // During a raid, joins are summarized instead
+                .filter(embed -> !raidDetector.isRaid())
+                .subscribe(messageManager::auditlog);
     }
 }
@@ -0,0 +1,131 @@
+package com.github.zaphx.discordbot.discord.log;
+
+import discord4j.core.spec.EmbedCreateSpec;
+
+import java.awt.Color;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An embed spec that writes down what is set on it, so several embeds can be summarized in one, or a single embed can
+ * be sent as it was built without building it again.
+ */
+class EmbedRecorder extends EmbedCreateSpec {
+
+    private String title;
+    private String author;
+    private Color color;
+    private final StringBuilder body = new StringBuilder();
+    /**
+     * Everything set on the spec, in order, so it can be set on a real spec later
+     */
+    private final List<Consumer<EmbedCreateSpec>> calls = new ArrayList<>();
+
+    @Override
+    public EmbedCreateSpec setTitle(String title) {
+        this.title = title;
+        calls.add(spec -> spec.setTitle(title));
+        return this;
+    }
+
+    @Override
+    public EmbedCreateSpec setDescription(String description) {
+        body.insert(0, description + "\n");
+        calls.add(spec -> spec.setDescription(description));
+        return this;
+    }
+
+    @Override
+    public EmbedCreateSpec setColor(Color color) {
+        this.color = color;
+        calls.add(spec -> spec.setColor(color));
+        return this;
+    }
+
+    @Override
+    public EmbedCreateSpec setAuthor(String name, String url, String iconUrl) {
+        this.author = name;
+        calls.add(spec -> spec.setAuthor(name, url, iconUrl));
+        return this;
+    }
+
+    @Override
+    public EmbedCreateSpec addField(String name, String value, boolean inline) {
+        body.append("**").append(name).append("** ").append(value).append('\n');
+        calls.add(spec -> spec.addField(name, value, inline));
+        return this;
+    }
+
+    @Override
+    public EmbedCreateSpec setFooter(String text, String iconUrl) {
+        body.append(text).append('\n');
+        calls.add(spec -> spec.setFooter(text, iconUrl));
+        return this;
+    }
+
+    @Override
+    public EmbedCreateSpec setTimestamp(Instant timestamp) {
+        calls.add(spec -> spec.setTimestamp(timestamp));
+        return this;
+    }
+
+    @Override
+    public EmbedCreateSpec setUrl(String url) {
+        calls.add(spec -> spec.setUrl(url));
+        return this;
+    }
+
+    @Override
+    public EmbedCreateSpec setImage(String url) {
+        calls.add(spec -> spec.setImage(url));
+        return this;
+    }
+
+    @Override
+    public EmbedCreateSpec setThumbnail(String url) {
+        calls.add(spec -> spec.setThumbnail(url));
+        return this;
+    }
+
+    /**
+     * @return The title of the embed, or its author if it has no title
+     */
+    String getHeading() {
+        String heading = title != null ? title : author != null ? author : "Log entry";
+        return truncate(heading, 256);
+    }
+
+    /**
+     * @return The description, fields and footer of the embed
+     */
+    String getBody() {
+        String text = body.toString().trim();
+        // A field must have a value
+        return text.isEmpty() ? "\u200B" : truncate(text, 1024);
+    }
+
+    /**
+     * Sets everything that was set on this spec on another one
+     *
+     * @param spec The spec to set it on
+     */
+    void replay(EmbedCreateSpec spec) {
+        for (Consumer<EmbedCreateSpec> call : calls) {
+            call.accept(spec);
+        }
+    }
+
+    Color getColor() {
+        return color;
+    }
+
+    int length() {
+        return getHeading().length() + getBody().length();
+    }
+
+    private static String truncate(String text, int length) {
+        return text.length() <= length ? text : text.substring(0, length - 3) + "...";
+    }
+}
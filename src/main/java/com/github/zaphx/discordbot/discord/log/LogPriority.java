@@ -0,0 +1,13 @@
+package com.github.zaphx.discordbot.discord.log;
+
+public enum LogPriority {
+
+    /**
+     * Moderation actions, like bans, mutes and removed advertisements. These are sent before anything else queued
+     */
+    CRITICAL,
+    /**
+     * Everything else, like joins and deleted messages
+     */
+    INFO
+}
@@ -0,0 +1,299 @@
+package com.github.zaphx.discordbot.discord.log;
+
+import com.github.zaphx.discordbot.Dizcord;
+import com.github.zaphx.discordbot.managers.ChannelManager;
+import discord4j.core.object.util.Snowflake;
+import discord4j.core.spec.EmbedCreateSpec;
+import discord4j.core.spec.MessageCreateSpec;
+import org.bukkit.configuration.file.FileConfiguration;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.awt.Color;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Sends log messages to a channel without flooding it. Messages are queued and sent one request at a time, so a request
+ * is only made once the previous one went through, and while Discord holds a request back for rate limits, the queue
+ * keeps filling. Everything queued by then is packed into the next request: text is joined into one message, and up to
+ * {@value #MAX_EMBEDS} embeds are summarized into one, as a bot message can only have a single embed.
+ * <p>
+ * {@link LogPriority#CRITICAL} messages are sent before {@link LogPriority#INFO} messages. Messages of the same priority
+ * are sent in the order they were queued.
+ */
+public class LogQueue {
+
+    private static final int MAX_EMBEDS = 10;
+    /**
+     * Discord allows 6000 characters in an embed, some of which are needed for the title
+     */
+    private static final int MAX_EMBED_LENGTH = 5500;
+    private static final int MAX_CONTENT_LENGTH = 2000;
+
+    private static final ConcurrentMap<Long, LogQueue> queues = new ConcurrentHashMap<>();
+    private static FileConfiguration config = Dizcord.getInstance().getConfig();
+    private static final Duration LINGER = Duration.ofMillis(config.getLong("discord.log-queue.linger", 250));
+    private static final int CAPACITY = config.getInt("discord.log-queue.capacity", 500);
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(config.getLong("discord.log-queue.shutdown-timeout", 5));
+
+    private final ChannelManager channelManager = ChannelManager.getInstance();
+    private final Snowflake channelId;
+    private final ArrayDeque<Entry> critical = new ArrayDeque<>();
+    private final ArrayDeque<Entry> info = new ArrayDeque<>();
+    /**
+     * True while a request is waiting to be made or is being made
+     */
+    private boolean sending;
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private LogQueue(Snowflake channelId) {
+        this.channelId = channelId;
+    }
+
+    /**
+     * Gets the queue of a channel
+     *
+     * @param channelId The Id of the channel
+     * @return The queue of the channel
+     */
+    public static LogQueue of(Snowflake channelId) {
+        return queues.computeIfAbsent(channelId.asLong(), id -> new LogQueue(channelId));
+    }
+
+    /**
+     * Queues a text message
+     *
+     * @param message  The message to send
+     * @param priority The priority of the message
+     */
+    public void add(String message, LogPriority priority) {
+        add(new Entry(message, null, priority));
+    }
+
+    /**
+     * Queues an embed
+     *
+     * @param embed    The embed to send
+     * @param priority The priority of the embed
+     */
+    public void add(Consumer<EmbedCreateSpec> embed, LogPriority priority) {
+        add(new Entry(null, embed, priority));
+    }
+
+    private synchronized void add(Entry entry) {
+        // Informational messages are dropped when the queue is full, moderation messages never are
+        if (entry.priority == LogPriority.INFO && critical.size() + info.size() >= CAPACITY) {
+            dropped.increment();
+            return;
+        }
+        (entry.priority == LogPriority.CRITICAL ? critical : info).add(entry);
+        queued.increment();
+        if (!sending) {
+            sending = true;
+            // Waiting a moment lets a burst of messages go out as one request
+            Mono.delay(LINGER, Schedulers.elastic()).subscribe(tick -> send());
+        }
+    }
+
+    /**
+     * Sends everything still queued in every channel, waiting for it to go out. Called when the plugin is disabled, so
+     * moderation logs are not lost. Gives up on what is left once the shutdown timeout has passed.
+     */
+    public static void flushAll() {
+        long deadline = System.nanoTime() + SHUTDOWN_TIMEOUT.toNanos();
+        for (LogQueue queue : queues.values()) {
+            queue.flush(deadline);
+        }
+    }
+
+    private void flush(long deadline) {
+        while (true) {
+            List<Entry> entries;
+            synchronized (this) {
+                entries = take();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (entries.isEmpty() || remaining <= 0) {
+                return;
+            }
+            Consumer<MessageCreateSpec> batch = pack(entries);
+            requests.increment();
+            try {
+                channelManager.resolveChannel(channelId)
+                        .flatMap(channel -> channel.createMessage(batch))
+                        .block(Duration.ofNanos(remaining));
+            } catch (RuntimeException e) {
+                System.err.print("An error occurred while sending the remaining log messages. See stacktrace below for more information.");
+                e.printStackTrace();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The amount of messages queued
+     */
+    public long getQueued() {
+        return queued.sum();
+    }
+
+    /**
+     * @return The amount of requests made to send the queued messages
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return The amount of messages dropped because the queue was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private void send() {
+        List<Entry> entries;
+        synchronized (this) {
+            entries = take();
+            if (entries.isEmpty()) {
+                sending = false;
+                return;
+            }
+        }
+        // Embeds are built outside of the lock, as building one can make a request of its own
+        Consumer<MessageCreateSpec> batch = pack(entries);
+        requests.increment();
+        channelManager.resolveChannel(channelId)
+                .flatMap(channel -> channel.createMessage(batch))
+                .doOnError(e -> {
+                    System.err.print("An error occurred while sending a log message. See stacktrace below for more information.");
+                    e.printStackTrace();
+                })
+                .onErrorResume(e -> Mono.empty())
+                // Whatever was queued while this request was made goes out right away
+                .doFinally(signal -> Schedulers.elastic().schedule(this::send))
+                .subscribe();
+    }
+
+    /**
+     * Takes the queued messages that fit in one message, highest priority first
+     */
+    private List<Entry> take() {
+        List<Entry> entries = new ArrayList<>();
+        int embeds = 0;
+        int contentLength = 0;
+        while (embeds < MAX_EMBEDS) {
+            ArrayDeque<Entry> queue = critical.isEmpty() ? info : critical;
+            Entry entry = queue.peek();
+            if (entry == null) {
+                break;
+            }
+            if (entry.message != null) {
+                if (contentLength > 0 && contentLength + entry.message.length() + 1 > MAX_CONTENT_LENGTH) {
+                    break;
+                }
+                contentLength += entry.message.length() + 1;
+            } else {
+                embeds++;
+            }
+            entries.add(queue.poll());
+        }
+        return entries;
+    }
+
+    /**
+     * Packs messages into one message. Embeds that do not fit in the summary are queued again
+     */
+    private Consumer<MessageCreateSpec> pack(List<Entry> entries) {
+        StringBuilder content = new StringBuilder();
+        List<Entry> embeds = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.message != null) {
+                content.append(content.length() > 0 ? "\n" : "").append(entry.message);
+            } else {
+                embeds.add(entry);
+            }
+        }
+        String text = content.length() > MAX_CONTENT_LENGTH ? content.substring(0, MAX_CONTENT_LENGTH) : content.toString();
+        List<EmbedRecorder> recorded = new ArrayList<>();
+        int length = 0;
+        for (int i = 0; i < embeds.size(); i++) {
+            EmbedRecorder recorder = embeds.get(i).record();
+            if (!recorded.isEmpty() && length + recorder.length() > MAX_EMBED_LENGTH) {
+                requeue(embeds.subList(i, embeds.size()));
+                break;
+            }
+            length += recorder.length();
+            recorded.add(recorder);
+        }
+        // A single embed is sent as it was recorded, so it is not built a second time
+        Consumer<EmbedCreateSpec> embed = recorded.isEmpty() ? null : recorded.size() == 1 ? recorded.get(0)::replay : summary(recorded);
+        return spec -> {
+            if (!text.isEmpty()) {
+                spec.setContent(text);
+            }
+            if (embed != null) {
+                spec.setEmbed(embed);
+            }
+        };
+    }
+
+    /**
+     * Puts embeds back at the front of their queue, in the order they were taken
+     */
+    private synchronized void requeue(List<Entry> entries) {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Entry entry = entries.get(i);
+            (entry.priority == LogPriority.CRITICAL ? critical : info).addFirst(entry);
+        }
+    }
+
+    private static Consumer<EmbedCreateSpec> summary(List<EmbedRecorder> recorded) {
+        return spec -> {
+            spec.setTitle("**" + recorded.size() + " log entries**").setTimestamp(Instant.now());
+            Color color = recorded.get(0).getColor();
+            if (color != null) {
+                spec.setColor(color);
+            }
+            for (EmbedRecorder recorder : recorded) {
+                spec.addField(recorder.getHeading(), recorder.getBody(), false);
+            }
+        };
+    }
+
+    private static class Entry {
+
+        private final String message;
+        private final Consumer<EmbedCreateSpec> embed;
+        private final LogPriority priority;
+        /**
+         * The embed as it was built, or null until it is first packed. Building an embed can make requests, so an
+         * embed that is queued again is not built again
+         */
+        private EmbedRecorder recorded;
+
+        private Entry(String message, Consumer<EmbedCreateSpec> embed, LogPriority priority) {
+            this.message = message;
+            this.embed = embed;
+            this.priority = priority;
+        }
+
+        private EmbedRecorder record() {
+            if (recorded == null) {
+                recorded = new EmbedRecorder();
+                embed.accept(recorded);
+            }
+            return recorded;
+        }
+    }
+}
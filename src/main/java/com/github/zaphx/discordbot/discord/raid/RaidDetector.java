@@ -0,0 +1,333 @@
+package com.github.zaphx.discordbot.discord.raid;
+
+import com.github.zaphx.discordbot.Dizcord;
+import com.github.zaphx.discordbot.discord.log.LogPriority;
+import com.github.zaphx.discordbot.managers.DiscordClientManager;
+import com.github.zaphx.discordbot.managers.EmbedManager;
+import com.github.zaphx.discordbot.managers.MessageManager;
+import discord4j.core.object.entity.Member;
+import org.bukkit.configuration.file.FileConfiguration;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+/**
+ * Notices raids as they happen, by counting the members that joined in the last few seconds: in the whole guild, per
+ * invite, and per account age. When any of these counts reaches its threshold, the guild is in raid mode. While in
+ * raid mode, members that join are not logged one by one, but summarized every so often, and the invite a raid comes
+ * through can be deleted. Raid mode ends once no threshold has been reached for a while.
+ * <p>
+ * Counting a join takes no locks and creates no objects, apart from the counter of an invite the first time it is seen,
+ * so a raid of thousands of members a minute costs little more than the joins themselves.
+ */
+public class RaidDetector {
+
+    /**
+     * The first second of 2015, which Discord counts the time in an Id from
+     */
+    private static final long DISCORD_EPOCH = 1420070400000L;
+    /**
+     * How often counters of invites that are no longer used are forgotten, in milliseconds
+     */
+    private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+    /**
+     * The value of raidUntil while the guild is not in raid mode
+     */
+    private static final long NO_RAID = 0;
+
+    private static RaidDetector instance;
+    private final DiscordClientManager clientManager = DiscordClientManager.getInstance();
+    private final EmbedManager embedManager = EmbedManager.getInstance();
+    private final MessageManager messageManager = MessageManager.getInstance();
+    private FileConfiguration config = Dizcord.getInstance().getConfig();
+    private final boolean enabled = config.getBoolean("discord.raid.enabled", true);
+    private final int window = config.getInt("discord.raid.window", 10);
+    private final int guildThreshold = config.getInt("discord.raid.guild-threshold", 40);
+    private final int inviteThreshold = config.getInt("discord.raid.invite-threshold", 20);
+    private final long cooldown = TimeUnit.SECONDS.toMillis(config.getLong("discord.raid.cooldown", 300));
+    private final Duration summaryInterval = Duration.ofSeconds(config.getLong("discord.raid.summary-interval", 30));
+    private final boolean pauseInvites = config.getBoolean("discord.raid.pause-invite", false);
+    /**
+     * The ages accounts are counted by, youngest first, in milliseconds
+     */
+    private final long[] ages;
+    private final int[] ageThresholds;
+    private final String[] ageNames;
+    private final String[] ageReasons;
+
+    private final SlidingWindowCounter joins = new SlidingWindowCounter(window);
+    private final SlidingWindowCounter[] ageJoins;
+    private final ConcurrentMap<String, InviteCounter> invites = new ConcurrentHashMap<>();
+    private final Function<String, InviteCounter> newInvite = code -> new InviteCounter(window);
+    private final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * When raid mode ends, unless a threshold is reached again before then, or {@value #NO_RAID} if the guild is not in
+     * raid mode. Starting, extending and ending raid mode all change this one value, so they cannot miss each other
+     */
+    private final AtomicLong raidUntil = new AtomicLong(NO_RAID);
+    private volatile long raidStarted;
+    private volatile Disposable summaries;
+    /**
+     * Joins since the last summary, in total and per account age
+     */
+    private final AtomicInteger raidJoins = new AtomicInteger();
+    private final AtomicIntegerArray raidAgeJoins;
+    private final AtomicInteger raidTotal = new AtomicInteger();
+
+    private RaidDetector() {
+        List<Long> hours = config.getLongList("discord.raid.account-age.hours");
+        List<Integer> thresholds = config.getIntegerList("discord.raid.account-age.thresholds");
+        int buckets = Math.min(hours.size(), thresholds.size());
+        if (buckets != hours.size() || buckets != thresholds.size()) {
+            Dizcord.getInstance().getLogger().log(Level.WARNING, "discord.raid.account-age has " + hours.size() + " ages but "
+                    + thresholds.size() + " thresholds. Only the first " + buckets + " are used.");
+        }
+        ages = new long[buckets];
+        ageThresholds = new int[buckets];
+        ageNames = new String[buckets];
+        ageReasons = new String[buckets];
+        ageJoins = new SlidingWindowCounter[buckets];
+        for (int i = 0; i < buckets; i++) {
+            ages[i] = TimeUnit.HOURS.toMillis(hours.get(i));
+            ageThresholds[i] = thresholds.get(i);
+            ageNames[i] = "Younger than " + hours.get(i) + " hour(s)";
+            ageReasons[i] = "accounts younger than " + hours.get(i) + " hour(s) joined";
+            ageJoins[i] = new SlidingWindowCounter(window);
+        }
+        raidAgeJoins = new AtomicIntegerArray(buckets);
+    }
+
+    /**
+     * Gets the instance of the RaidDetector
+     *
+     * @return A new instance if one does not exist, else the instance
+     */
+    public static RaidDetector getInstance() {
+        return instance == null ? instance = new RaidDetector() : instance;
+    }
+
+    /**
+     * Counts a member that joined the guild
+     *
+     * @param member The member that joined
+     */
+    public void onJoin(Member member) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int count = joins.increment(now);
+        if (count >= guildThreshold) {
+            trip("members joined", null, count, now);
+        }
+        long age = now - ((member.getId().asLong() >>> 22) + DISCORD_EPOCH);
+        boolean raiding = isRaid();
+        if (raiding) {
+            raidJoins.incrementAndGet();
+            raidTotal.incrementAndGet();
+        }
+        // The buckets overlap, as an account younger than a day is also younger than a week
+        for (int i = 0; i < ages.length && age < ages[i]; i++) {
+            if (raiding) {
+                raidAgeJoins.incrementAndGet(i);
+            }
+            count = ageJoins[i].increment(now);
+            if (count >= ageThresholds[i]) {
+                trip(ageReasons[i], null, count, now);
+            }
+        }
+    }
+
+    /**
+     * Counts a use of an invite, once the invite a member joined with is known
+     *
+     * @param code The code of the invite
+     */
+    public void onInvite(String code) {
+        if (!enabled || code == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long last = lastSweep.get();
+        if (now - last >= SWEEP_INTERVAL && lastSweep.compareAndSet(last, now)) {
+            sweep(now);
+        }
+        InviteCounter counter = invites.computeIfAbsent(code, newInvite);
+        int count = counter.joins.increment(now);
+        if (isRaid()) {
+            counter.raidJoins.incrementAndGet();
+        }
+        if (count >= inviteThreshold) {
+            trip("members joined through invite ", code, count, now);
+            if (pauseInvites && counter.deleted.compareAndSet(false, true)) {
+                deleteInvite(code);
+            }
+        }
+    }
+
+    /**
+     * @return True if the guild is in raid mode, so joins should not be logged one by one
+     */
+    public boolean isRaid() {
+        return raidUntil.get() != NO_RAID;
+    }
+
+    /**
+     * @return How many members joined the guild in the last few seconds
+     */
+    public int getRecentJoins() {
+        return joins.sum(System.currentTimeMillis());
+    }
+
+    /**
+     * @return How many seconds the counts cover
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Ends raid mode right away, and sends a last summary
+     */
+    public void endRaid() {
+        summarize(true);
+    }
+
+    /**
+     * Stops summarizing. Called when the plugin is disabled
+     */
+    public void shutdown() {
+        Disposable current = summaries;
+        if (current != null) {
+            current.dispose();
+        }
+    }
+
+    /**
+     * Starts raid mode, or keeps it going if it has already started
+     *
+     * @param source What the threshold that was reached counts
+     * @param code   The invite the threshold counts, or null. Only joined to the source once raid mode starts
+     */
+    private void trip(String source, String code, int count, long now) {
+        long until = now + cooldown;
+        while (true) {
+            long current = raidUntil.get();
+            if (current != NO_RAID) {
+                if (current >= until || raidUntil.compareAndSet(current, until)) {
+                    return;
+                }
+                continue;
+            }
+            // Raid mode starts under the same lock summaries take, so a summary never sees a raid without its own summaries
+            synchronized (this) {
+                if (raidUntil.compareAndSet(NO_RAID, until)) {
+                    start(source, code, count, now);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void start(String source, String code, int count, long now) {
+        raidStarted = now;
+        raidJoins.set(0);
+        raidTotal.set(0);
+        for (int i = 0; i < raidAgeJoins.length(); i++) {
+            raidAgeJoins.set(i, 0);
+        }
+        for (InviteCounter counter : invites.values()) {
+            counter.raidJoins.set(0);
+        }
+        String reason = code == null ? source : source + code;
+        Dizcord.getInstance().getLogger().log(Level.WARNING, "Raid mode started: " + count + " " + reason + " in " + window + " seconds");
+        messageManager.auditlog(embedManager.raidDetected(reason, count, window), LogPriority.CRITICAL);
+        summaries = Flux.interval(summaryInterval, summaryInterval, Schedulers.elastic()).subscribe(tick -> summarize(false));
+    }
+
+    /**
+     * Sends a summary of the members that joined since the last one, and ends raid mode if it has cooled down
+     *
+     * @param end True to end raid mode even if it has not cooled down
+     */
+    private synchronized void summarize(boolean end) {
+        long now = System.currentTimeMillis();
+        long until = raidUntil.get();
+        if (until == NO_RAID) {
+            return;
+        }
+        Disposable current = summaries;
+        // Fails if a threshold was reached in the meantime, which keeps raid mode going
+        boolean ended = (end || now >= until) && raidUntil.compareAndSet(until, NO_RAID);
+        int joined = raidJoins.getAndSet(0);
+        StringBuilder ageSummary = new StringBuilder();
+        for (int i = 0; i < ages.length; i++) {
+            ageSummary.append(ageNames[i]).append(": ").append(raidAgeJoins.getAndSet(i, 0)).append('\n');
+        }
+        StringBuilder inviteSummary = new StringBuilder();
+        for (Map.Entry<String, InviteCounter> entry : invites.entrySet()) {
+            int used = entry.getValue().raidJoins.getAndSet(0);
+            // An embed field holds 1024 characters
+            if (used > 0 && inviteSummary.length() < 960) {
+                inviteSummary.append(entry.getKey()).append(": ").append(used)
+                        .append(entry.getValue().deleted.get() ? " (deleted)" : "").append('\n');
+            }
+        }
+        messageManager.auditlog(embedManager.raidSummary(joined, raidTotal.get(), inviteSummary.toString(), ageSummary.toString(),
+                TimeUnit.MILLISECONDS.toMinutes(now - raidStarted), ended), LogPriority.CRITICAL);
+        if (ended) {
+            if (current != null) {
+                current.dispose();
+            }
+            Dizcord.getInstance().getLogger().info("Raid mode ended after " + raidTotal.get() + " joins");
+        }
+    }
+
+    /**
+     * Forgets the counters of invites that have not been used in a while, so the map does not grow with every invite
+     * ever used. Counters with joins that have not been summarized yet are kept
+     */
+    private void sweep(long now) {
+        invites.values().removeIf(counter -> counter.joins.sum(now) == 0 && counter.raidJoins.get() == 0);
+    }
+
+    /**
+     * Discord has no way to pause an invite, so the invite is deleted instead
+     */
+    private void deleteInvite(String code) {
+        clientManager.getServiceMediator().getRestClient().getInviteService()
+                .deleteInvite(code, "Raid detected: more than " + inviteThreshold + " joins in " + window + " seconds")
+                .subscribe(response -> Dizcord.getInstance().getLogger().log(Level.WARNING, "Deleted invite " + code + " during a raid"), e -> {
+                    System.err.print("An error occurred while deleting invite " + code + ". See stacktrace below for more information.");
+                    e.printStackTrace();
+                });
+    }
+
+    private static class InviteCounter {
+
+        private final SlidingWindowCounter joins;
+        /**
+         * Joins since the last summary
+         */
+        private final AtomicInteger raidJoins = new AtomicInteger();
+        private final AtomicBoolean deleted = new AtomicBoolean();
+
+        private InviteCounter(int window) {
+            this.joins = new SlidingWindowCounter(window);
+        }
+    }
+}
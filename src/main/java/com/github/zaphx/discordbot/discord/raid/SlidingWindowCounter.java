@@ -0,0 +1,58 @@
+package com.github.zaphx.discordbot.discord.raid;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events over the last few seconds without locking or allocating. The window is split into buckets of one
+ * second, kept in a ring. Each slot holds the second it counts for and its count, packed into one long, so a slot
+ * still holding an older second is simply started over the first time the ring comes back round to it.
+ */
+class SlidingWindowCounter {
+
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final AtomicLongArray slots;
+
+    /**
+     * @param seconds The length of the window, in seconds
+     */
+    SlidingWindowCounter(int seconds) {
+        this.slots = new AtomicLongArray(Math.max(1, seconds));
+    }
+
+    /**
+     * Counts an event
+     *
+     * @param now The current time, in milliseconds since the epoch
+     * @return The amount of events in the window, including this one
+     */
+    int increment(long now) {
+        long second = now / 1000;
+        int index = (int) (second % slots.length());
+        while (true) {
+            long slot = slots.get(index);
+            long updated = slot >>> COUNT_BITS == second ? Math.min(slot + 1, second << COUNT_BITS | COUNT_MASK) : second << COUNT_BITS | 1;
+            if (slots.compareAndSet(index, slot, updated)) {
+                break;
+            }
+        }
+        return sum(now);
+    }
+
+    /**
+     * @param now The current time, in milliseconds since the epoch
+     * @return The amount of events in the window
+     */
+    int sum(long now) {
+        long second = now / 1000;
+        int sum = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            long slot = slots.get(i);
+            if (second - (slot >>> COUNT_BITS) < slots.length()) {
+                sum += slot & COUNT_MASK;
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.zaphx.discordbot.discord.stages;
+
+import com.github.zaphx.discordbot.api.pipeline.MessageContext;
+import com.github.zaphx.discordbot.api.pipeline.MessageStage;
+import com.github.zaphx.discordbot.api.pipeline.StageResult;
+import com.github.zaphx.discordbot.discord.AntiAdvertisement;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Deletes advertisements, see {@link AntiAdvertisement}. This also checks messages sent by bots.
+ */
+public class AdvertisementStage implements MessageStage {
+
+    private AntiAdvertisement antiAdvertisement = new AntiAdvertisement();
+
+    @NotNull
+    @Override
+    public String getName() {
+        return "advertisement";
+    }
+
+    @Override
+    public int getPriority() {
+        return 0;
+    }
+
+    @NotNull
+    @Override
+    public StageResult handle(MessageContext context) {
+        if (!context.getEvent().getMember().isPresent()) {
+            return StageResult.CONTINUE;
+        }
+        return antiAdvertisement.checkAndHandle(context.getEvent(), context.getScan()) ? StageResult.DELETED : StageResult.CONTINUE;
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.zaphx.discordbot.discord.stages;
+
+import com.github.zaphx.discordbot.api.pipeline.MessageContext;
+import com.github.zaphx.discordbot.api.pipeline.MessageStage;
+import com.github.zaphx.discordbot.api.pipeline.StageResult;
+import com.github.zaphx.discordbot.managers.MessageManager;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Archives messages in the message cache and the SQL database, see {@link MessageManager#addMessage}. This runs last,
+ * so messages deleted by an earlier stage are never archived.
+ */
+public class ArchiveStage implements MessageStage {
+
+    private MessageManager messageManager = MessageManager.getInstance();
+
+    @NotNull
+    @Override
+    public String getName() {
+        return "archive";
+    }
+
+    @Override
+    public int getPriority() {
+        return 200;
+    }
+
+    @NotNull
+    @Override
+    public StageResult handle(MessageContext context) {
+        if (context.isBot() || context.isCommand()) {
+            return StageResult.CONTINUE;
+        }
+        messageManager.addMessage(context.getMessage());
+        return StageResult.CONTINUE;
+    }
+}
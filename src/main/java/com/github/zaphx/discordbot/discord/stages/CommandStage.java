@@ -0,0 +1,35 @@
+package com.github.zaphx.discordbot.discord.stages;
+
+import com.github.zaphx.discordbot.api.commandhandler.CommandHandler;
+import com.github.zaphx.discordbot.api.pipeline.MessageContext;
+import com.github.zaphx.discordbot.api.pipeline.MessageStage;
+import com.github.zaphx.discordbot.api.pipeline.StageResult;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Runs commands, see {@link CommandHandler}.
+ */
+public class CommandStage implements MessageStage {
+
+    private CommandHandler commandHandler = CommandHandler.getInstance();
+
+    @NotNull
+    @Override
+    public String getName() {
+        return "command";
+    }
+
+    @Override
+    public int getPriority() {
+        return 100;
+    }
+
+    @NotNull
+    @Override
+    public StageResult handle(MessageContext context) {
+        if (context.isCommand() && !context.isBot()) {
+            commandHandler.checkForCommand(context.getEvent());
+        }
+        return StageResult.CONTINUE;
+    }
+}
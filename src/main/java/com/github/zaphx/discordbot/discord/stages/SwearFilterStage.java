@@ -0,0 +1,35 @@
+package com.github.zaphx.discordbot.discord.stages;
+
+import com.github.zaphx.discordbot.api.pipeline.MessageContext;
+import com.github.zaphx.discordbot.api.pipeline.MessageStage;
+import com.github.zaphx.discordbot.api.pipeline.StageResult;
+import com.github.zaphx.discordbot.managers.AntiSwearManager;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Deletes messages containing filtered words, see {@link AntiSwearManager}.
+ */
+public class SwearFilterStage implements MessageStage {
+
+    private AntiSwearManager antiSwearManager = AntiSwearManager.getInstance();
+
+    @NotNull
+    @Override
+    public String getName() {
+        return "swear-filter";
+    }
+
+    @Override
+    public int getPriority() {
+        return 10;
+    }
+
+    @NotNull
+    @Override
+    public StageResult handle(MessageContext context) {
+        if (context.isBot() || context.isCommand()) {
+            return StageResult.CONTINUE;
+        }
+        return antiSwearManager.handleMessage(context.getMessage(), context.getScan()) ? StageResult.DELETED : StageResult.CONTINUE;
+    }
+}
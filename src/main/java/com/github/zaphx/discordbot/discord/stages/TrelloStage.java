@@ -0,0 +1,38 @@
+package com.github.zaphx.discordbot.discord.stages;
+
+import com.github.zaphx.discordbot.api.pipeline.MessageContext;
+import com.github.zaphx.discordbot.api.pipeline.MessageStage;
+import com.github.zaphx.discordbot.api.pipeline.StageResult;
+import com.github.zaphx.discordbot.trello.TrelloManager;
+import com.github.zaphx.discordbot.trello.TrelloType;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Files issues and suggestions to trello, see {@link TrelloManager}.
+ */
+public class TrelloStage implements MessageStage {
+
+    private TrelloManager trelloManager = TrelloManager.getInstance();
+
+    @NotNull
+    @Override
+    public String getName() {
+        return "trello";
+    }
+
+    @Override
+    public int getPriority() {
+        return 100;
+    }
+
+    @NotNull
+    @Override
+    public StageResult handle(MessageContext context) {
+        if (context.isBot() || context.isCommand()) {
+            return StageResult.CONTINUE;
+        }
+        trelloManager.checkAndSend(context.getEvent(), TrelloType.ISSUE);
+        trelloManager.checkAndSend(context.getEvent(), TrelloType.SUGGESTION);
+        return StageResult.CONTINUE;
+    }
+}
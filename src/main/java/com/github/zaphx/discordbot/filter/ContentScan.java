@@ -0,0 +1,170 @@
+package com.github.zaphx.discordbot.filter;
+
+import com.github.zaphx.discordbot.utilities.RegexPattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Everything in a message that moderation cares about, found in a single pass over the content. The patterns of
+ * {@link #CATEGORIES} are joined into one alternation, so the message is matched once instead of once per pattern,
+ * and the result is shared by every check that handles the message.
+ */
+public final class ContentScan {
+
+    /**
+     * The patterns a scan looks for. Where two patterns match at the same position, the first one listed wins
+     */
+    public static final RegexPattern[] CATEGORIES = {RegexPattern.SERVER_ADVERTISEMENT, RegexPattern.IP,
+            RegexPattern.TOKEN, RegexPattern.USER, RegexPattern.ROLE, RegexPattern.EMOTES};
+
+    private static final Pattern COMBINED;
+    /**
+     * The group of the combined pattern that each category is matched by
+     */
+    private static final int[] GROUPS = new int[CATEGORIES.length];
+
+    static {
+        StringBuilder combined = new StringBuilder();
+        int group = 1;
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            Pattern pattern = CATEGORIES[i].getPattern();
+            if (i > 0) {
+                combined.append('|');
+            }
+            combined.append('(').append(pattern.pattern()).append(')');
+            GROUPS[i] = group;
+            group += pattern.matcher("").groupCount() + 1;
+        }
+        COMBINED = Pattern.compile(combined.toString());
+    }
+
+    private final String content;
+    /**
+     * Every match as category, start and end, in the order they appear
+     */
+    private final int[] matches;
+    private final int matchCount;
+    private final int found;
+
+    private ContentScan(String content, int[] matches, int matchCount, int found) {
+        this.content = content;
+        this.matches = matches;
+        this.matchCount = matchCount;
+        this.found = found;
+    }
+
+    /**
+     * Scans the content of a message
+     *
+     * @param content The content to scan
+     * @return The result of the scan
+     */
+    public static ContentScan scan(String content) {
+        int[] matches = new int[0];
+        int count = 0;
+        int found = 0;
+        Matcher matcher = COMBINED.matcher(content);
+        while (matcher.find()) {
+            int category = 0;
+            while (matcher.start(GROUPS[category]) == -1) {
+                category++;
+            }
+            if (count * 3 == matches.length) {
+                matches = Arrays.copyOf(matches, Math.max(12, matches.length * 2));
+            }
+            matches[count * 3] = category;
+            matches[count * 3 + 1] = matcher.start();
+            matches[count * 3 + 2] = matcher.end();
+            count++;
+            found |= 1 << category;
+        }
+        return new ContentScan(content, matches, count, found);
+    }
+
+    /**
+     * @return The content that was scanned
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * @param pattern The pattern to look for
+     * @return True if the content matched the pattern, else false
+     */
+    public boolean contains(RegexPattern pattern) {
+        return (found & 1 << indexOf(pattern)) != 0;
+    }
+
+    /**
+     * @return True if the content contains an invite or an IP
+     */
+    public boolean isAdvertisement() {
+        return contains(RegexPattern.SERVER_ADVERTISEMENT) || contains(RegexPattern.IP);
+    }
+
+    /**
+     * @param pattern The pattern to look for
+     * @return Every part of the content matched by the pattern, in order
+     */
+    public List<String> getMatches(RegexPattern pattern) {
+        int category = indexOf(pattern);
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < matchCount; i++) {
+            if (matches[i * 3] == category) {
+                result.add(content.substring(matches[i * 3 + 1], matches[i * 3 + 2]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces every match of a pattern
+     *
+     * @param pattern     The pattern to replace
+     * @param replacement The text to replace each match with
+     * @return The content with the matches replaced
+     */
+    public String replace(RegexPattern pattern, String replacement) {
+        return replace(replacement, pattern);
+    }
+
+    /**
+     * Replaces every match of any of the patterns
+     *
+     * @param replacement The text to replace each match with
+     * @param patterns    The patterns to replace
+     * @return The content with the matches replaced
+     */
+    public String replace(String replacement, RegexPattern... patterns) {
+        int categories = 0;
+        for (RegexPattern pattern : patterns) {
+            categories |= 1 << indexOf(pattern);
+        }
+        if ((found & categories) == 0) {
+            return content;
+        }
+        StringBuilder builder = new StringBuilder(content.length());
+        int last = 0;
+        for (int i = 0; i < matchCount; i++) {
+            if ((categories & 1 << matches[i * 3]) != 0) {
+                builder.append(content, last, matches[i * 3 + 1]).append(replacement);
+                last = matches[i * 3 + 2];
+            }
+        }
+        return builder.append(content, last, content.length()).toString();
+    }
+
+    private static int indexOf(RegexPattern pattern) {
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            if (CATEGORIES[i] == pattern) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(pattern.name() + " is not scanned for");
+    }
+}
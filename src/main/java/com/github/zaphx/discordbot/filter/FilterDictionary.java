@@ -0,0 +1,108 @@
+package com.github.zaphx.discordbot.filter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * An immutable set of filter rules, loaded from the files in the filters folder of the plugin:
+ * <ul>
+ * <li>{@value #WORDS}: words to filter, see {@link WordFilter}</li>
+ * <li>{@value #ALLOWED}: words that are never filtered</li>
+ * <li>{@value #PATTERNS}: regular expressions to filter, for what the word list cannot express</li>
+ * </ul>
+ * Every file has one entry per line. Blank lines and lines starting with # are skipped.
+ */
+public final class FilterDictionary {
+
+    public static final String WORDS = "words.txt";
+    public static final String ALLOWED = "allowed.txt";
+    public static final String PATTERNS = "patterns.txt";
+
+    /**
+     * A dictionary that filters nothing, used until the files have been loaded
+     */
+    public static final FilterDictionary EMPTY = new FilterDictionary(WordFilter.compile(Collections.emptyList()), new Pattern[0], 0);
+
+    private final WordFilter words;
+    private final Pattern[] patterns;
+    private final long buildTime;
+
+    private FilterDictionary(WordFilter words, Pattern[] patterns, long buildTime) {
+        this.words = words;
+        this.patterns = patterns;
+        this.buildTime = buildTime;
+    }
+
+    /**
+     * Loads and compiles the filter files in a folder. Missing files are treated as empty.
+     *
+     * @param folder The folder to load from
+     * @return The dictionary
+     * @throws IOException            If a file could not be read
+     * @throws PatternSyntaxException If a pattern is not a valid regular expression
+     */
+    public static FilterDictionary load(File folder) throws IOException {
+        long start = System.nanoTime();
+        WordFilter words = WordFilter.compile(readEntries(new File(folder, WORDS)), readEntries(new File(folder, ALLOWED)));
+        List<String> expressions = readEntries(new File(folder, PATTERNS));
+        Pattern[] patterns = new Pattern[expressions.size()];
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = Pattern.compile(expressions.get(i), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        }
+        return new FilterDictionary(words, patterns, System.nanoTime() - start);
+    }
+
+    private static List<String> readEntries(File file) throws IOException {
+        List<String> entries = new ArrayList<>();
+        if (!file.exists()) {
+            return entries;
+        }
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            String entry = line.trim();
+            if (!entry.isEmpty() && !entry.startsWith("#")) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Checks a text against the word list first, and the patterns after
+     *
+     * @param text The text to check
+     * @return True if the text contains a filtered word or matches a pattern, else false
+     */
+    public boolean matches(CharSequence text) {
+        if (words.find(text) != -1) {
+            return true;
+        }
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(text).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public WordFilter getWords() {
+        return words;
+    }
+
+    public int getPatternCount() {
+        return patterns.length;
+    }
+
+    /**
+     * @return How long it took to load and compile the dictionary, in nanoseconds
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+}
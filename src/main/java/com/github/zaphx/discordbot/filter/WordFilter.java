@@ -0,0 +1,381 @@
+package com.github.zaphx.discordbot.filter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * An immutable Aho-Corasick automaton that finds filtered words in a message in a single pass, without allocating.
+ * <p>
+ * Text is normalized while it is scanned: letters are lower cased, common leetspeak digits and symbols are read as
+ * the letters they stand for, zero-width characters are ignored, and repeated letters are folded ("fuuuck"), unless
+ * the repeat is part of a filtered word. Anything that is not a letter or digit separates words, as does Discord markup
+ * such as mentions and custom emotes.
+ * <p>
+ * Entries match whole words. An entry starting or ending with {@code *} also matches inside longer words, so
+ * {@code *word*} matches anywhere. Allowed words are never matched, so a filter can match inside most words except a
+ * few known ones.
+ */
+public final class WordFilter {
+
+    /**
+     * Symbol for anything that separates words
+     */
+    private static final int BOUNDARY = 0;
+    /**
+     * Symbol for letters that no entry can contain, such as letters outside of the latin alphabet
+     */
+    private static final int OTHER = 37;
+    private static final int SYMBOLS = 38;
+    /**
+     * Returned for characters that are skipped while scanning
+     */
+    private static final int IGNORED = -1;
+    /**
+     * Discord markup, like {@code <@123>} or {@code <:emote:123>}, is never longer than this
+     */
+    private static final int MAX_MARKUP = 64;
+
+    private final int[] transitions;
+    private final int[] depths;
+    private final int[] matches;
+    private final String[] words;
+    private final WordFilter allowed;
+
+    private WordFilter(int[] transitions, int[] depths, int[] matches, String[] words, WordFilter allowed) {
+        this.transitions = transitions;
+        this.depths = depths;
+        this.matches = matches;
+        this.words = words;
+        this.allowed = allowed;
+    }
+
+    /**
+     * Builds a filter from a list of entries. Blank entries, and entries with letters outside of the latin alphabet, are ignored.
+     *
+     * @param entries The words to filter
+     * @return The filter
+     */
+    public static WordFilter compile(Collection<String> entries) {
+        return compile(entries, Collections.emptyList());
+    }
+
+    /**
+     * Builds a filter from a list of entries, which never matches inside the allowed words. Allowed words always match
+     * whole words, and are normalized the same way as the text.
+     *
+     * @param entries The words to filter
+     * @param allowed The words to never filter
+     * @return The filter
+     */
+    public static WordFilter compile(Collection<String> entries, Collection<String> allowed) {
+        List<String> wholeWords = new ArrayList<>();
+        for (String word : allowed) {
+            wholeWords.add(word.replace("*", ""));
+        }
+        return build(entries, wholeWords.isEmpty() ? null : build(wholeWords, null));
+    }
+
+    private static WordFilter build(Collection<String> entries, WordFilter allowed) {
+        List<String> words = new ArrayList<>();
+        List<int[]> patterns = new ArrayList<>();
+        for (String entry : entries) {
+            int[] pattern = toPattern(entry.trim());
+            if (pattern != null) {
+                words.add(entry.trim());
+                patterns.add(pattern);
+            }
+        }
+
+        // Build the trie. -1 means there is no transition yet
+        int capacity = 1;
+        for (int[] pattern : patterns) {
+            capacity += pattern.length;
+        }
+        int[] transitions = new int[capacity * SYMBOLS];
+        Arrays.fill(transitions, -1);
+        int[] depths = new int[capacity];
+        int[] matches = new int[capacity];
+        Arrays.fill(matches, -1);
+        int states = 1;
+        for (int i = 0; i < patterns.size(); i++) {
+            int state = 0;
+            for (int symbol : patterns.get(i)) {
+                int next = transitions[state * SYMBOLS + symbol];
+                if (next == -1) {
+                    next = states++;
+                    depths[next] = depths[state] + 1;
+                    transitions[state * SYMBOLS + symbol] = next;
+                }
+                state = next;
+            }
+            if (matches[state] == -1) {
+                matches[state] = i;
+            }
+        }
+
+        // Turn the trie into a deterministic automaton, following failure links breadth first
+        int[] failures = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < SYMBOLS; symbol++) {
+            int next = transitions[symbol];
+            if (next == -1) {
+                transitions[symbol] = 0;
+            } else {
+                failures[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            if (matches[state] == -1) {
+                matches[state] = matches[failures[state]];
+            }
+            for (int symbol = 0; symbol < SYMBOLS; symbol++) {
+                int next = transitions[state * SYMBOLS + symbol];
+                int fallback = transitions[failures[state] * SYMBOLS + symbol];
+                if (next == -1) {
+                    transitions[state * SYMBOLS + symbol] = fallback;
+                } else {
+                    failures[next] = fallback;
+                    queue.add(next);
+                }
+            }
+        }
+        return new WordFilter(Arrays.copyOf(transitions, states * SYMBOLS), Arrays.copyOf(depths, states),
+                Arrays.copyOf(matches, states), words.toArray(new String[0]), allowed);
+    }
+
+    /**
+     * Finds the first filtered word in a text
+     *
+     * @param text The text to scan
+     * @return The index of the matched entry, or -1 if the text is clean
+     */
+    public int find(CharSequence text) {
+        return scan(text, 0, text.length());
+    }
+
+    private int scan(CharSequence text, int start, int end) {
+        // The text is surrounded by boundaries, so whole words match at its start and end
+        int state = transitions[BOUNDARY];
+        int previous = BOUNDARY;
+        int wordStart = start;
+        for (int i = start; i <= end; i++) {
+            int symbol;
+            if (i == end) {
+                symbol = BOUNDARY;
+            } else {
+                int markup = text.charAt(i) == '<' ? markupEnd(text, i, end) : -1;
+                if (markup != -1) {
+                    i = markup;
+                    symbol = BOUNDARY;
+                } else {
+                    symbol = symbolAt(text, i, end);
+                    if (symbol == IGNORED) {
+                        continue;
+                    }
+                }
+            }
+            int next = transitions[state * SYMBOLS + symbol];
+            // A repeated symbol is folded into the one before it, unless a filtered word continues with it
+            if (symbol == previous && depths[next] != depths[state] + 1) {
+                continue;
+            }
+            previous = symbol;
+            state = next;
+            if (matches[state] != -1 && !isAllowed(text, wordStart, i, end)) {
+                return matches[state];
+            }
+            if (symbol == BOUNDARY) {
+                wordStart = i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks the word a match ended in against the allowed words, so "*cunt*" can match anywhere except in "scunthorpe"
+     */
+    private boolean isAllowed(CharSequence text, int wordStart, int matchEnd, int end) {
+        if (allowed == null) {
+            return false;
+        }
+        int wordEnd = matchEnd;
+        while (wordEnd < end && symbolAt(text, wordEnd, end) != BOUNDARY) {
+            wordEnd++;
+        }
+        return allowed.scan(text, wordStart, wordEnd) != -1;
+    }
+
+    /**
+     * @param index The index returned by {@link #find(CharSequence)}
+     * @return The entry at the index
+     */
+    public String getWord(int index) {
+        return words[index];
+    }
+
+    /**
+     * @return The amount of entries in the filter
+     */
+    public int getWordCount() {
+        return words.length;
+    }
+
+    /**
+     * @return The amount of allowed words
+     */
+    public int getAllowedCount() {
+        return allowed == null ? 0 : allowed.getWordCount();
+    }
+
+    /**
+     * @return The amount of states in the automaton, including the automaton of allowed words
+     */
+    public int getStateCount() {
+        return depths.length + (allowed == null ? 0 : allowed.getStateCount());
+    }
+
+    /**
+     * Turns an entry into the symbols the automaton matches. Repeated letters are kept, as the automaton only folds
+     * repeats that are not part of an entry.
+     */
+    private static int[] toPattern(String entry) {
+        boolean prefix = entry.startsWith("*");
+        boolean suffix = entry.endsWith("*");
+        String word = entry.substring(prefix ? 1 : 0, Math.max(prefix ? 1 : 0, entry.length() - (suffix ? 1 : 0)));
+        int[] symbols = new int[word.length() + 2];
+        int count = 0;
+        if (!prefix) {
+            symbols[count++] = BOUNDARY;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (isIgnored(c)) {
+                continue;
+            }
+            int symbol = toSymbol(c);
+            // Separators inside a phrase match any run of separators
+            if (symbol == BOUNDARY && count > 0 && symbols[count - 1] == BOUNDARY) {
+                continue;
+            }
+            symbols[count++] = symbol;
+        }
+        boolean hasLetters = false;
+        for (int i = 0; i < count; i++) {
+            // Letters outside of the latin alphabet all share one symbol, so an entry containing them would match too much
+            if (symbols[i] == OTHER) {
+                return null;
+            }
+            hasLetters |= symbols[i] != BOUNDARY;
+        }
+        if (!hasLetters) {
+            return null;
+        }
+        if (!suffix && symbols[count - 1] != BOUNDARY) {
+            symbols[count++] = BOUNDARY;
+        }
+        return Arrays.copyOf(symbols, count);
+    }
+
+    private static int symbolAt(CharSequence text, int i, int end) {
+        char c = text.charAt(i);
+        if (isIgnored(c)) {
+            return IGNORED;
+        }
+        // Symbols are read as the letters they stand for wherever they are, so "a$$" and "@$$" are caught. Exclamation
+        // marks and pipes are common punctuation and spoiler markup though, so after the last letter they end the word
+        if ((c == '!' || c == '|') && !continuesWord(text, i + 1, end)) {
+            return BOUNDARY;
+        }
+        return toSymbol(c);
+    }
+
+    /**
+     * @return True if a letter or digit follows the index, with nothing but symbols standing for letters in between
+     */
+    private static boolean continuesWord(CharSequence text, int i, int end) {
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                return true;
+            }
+            if (!isIgnored(c) && toSymbol(c) == BOUNDARY) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static int toSymbol(char c) {
+        switch (c) {
+            case '0':
+                return symbolOf('o');
+            case '1':
+            case '!':
+            case '|':
+                return symbolOf('i');
+            case '3':
+                return symbolOf('e');
+            case '4':
+            case '@':
+                return symbolOf('a');
+            case '5':
+            case '$':
+                return symbolOf('s');
+            case '7':
+            case '+':
+                return symbolOf('t');
+            default:
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return symbolOf((char) (c + ('a' - 'A')));
+        }
+        if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+            return symbolOf(c);
+        }
+        return Character.isLetterOrDigit(c) ? OTHER : BOUNDARY;
+    }
+
+    private static int symbolOf(char c) {
+        return c <= '9' ? 27 + (c - '0') : 1 + (c - 'a');
+    }
+
+    /**
+     * Zero-width and other invisible formatting characters are used to split words without it showing
+     */
+    private static boolean isIgnored(char c) {
+        return c == '\u00AD' || (c >= '\u200B' && c <= '\u200F') || (c >= '\u2060' && c <= '\u2064') || c == '\uFEFF'
+                || Character.getType(c) == Character.NON_SPACING_MARK;
+    }
+
+    /**
+     * @return The index of the closing bracket of the Discord markup starting at the index, or -1 if it is not markup
+     */
+    private static int markupEnd(CharSequence text, int start, int end) {
+        if (start + 1 >= end) {
+            return -1;
+        }
+        char type = text.charAt(start + 1);
+        if (type != '@' && type != '#' && type != ':' && !(type == 'a' && start + 2 < end && text.charAt(start + 2) == ':')) {
+            return -1;
+        }
+        int limit = Math.min(end, start + MAX_MARKUP);
+        for (int i = start + 2; i < limit; i++) {
+            char c = text.charAt(i);
+            // Markup always ends with the Id of what it refers to, so text like <@home> is still scanned
+            if (c == '>') {
+                return Character.isDigit(text.charAt(i - 1)) ? i : -1;
+            }
+            if (Character.isWhitespace(c)) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
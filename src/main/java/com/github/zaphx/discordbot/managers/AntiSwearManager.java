@@ -1,58 +1,176 @@
 package com.github.zaphx.discordbot.managers;
 
+import com.github.zaphx.discordbot.Dizcord;
+import com.github.zaphx.discordbot.filter.ContentScan;
+import com.github.zaphx.discordbot.filter.FilterDictionary;
 import com.github.zaphx.discordbot.utilities.RegexPattern;
 import discord4j.core.object.entity.Message;
 import discord4j.core.object.entity.User;
+import org.bukkit.configuration.file.FileConfiguration;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Removes messages containing filtered words. Messages are checked against the filter files in the plugin folder, and
+ * can optionally be checked by purgomalum.com as well, after the local check found nothing.
+ * <p>
+ * The filter files can be changed while the server is running. A new dictionary is built off the event thread and then
+ * swapped in, so messages keep being checked against the old one until the new one is ready.
+ */
 public class AntiSwearManager {
 
+    private static final String REMOTE_URL = "https://www.purgomalum.com/service/containsprofanity?text=";
+    private static final int REMOTE_TIMEOUT = 5000;
+    /**
+     * Editors often write a file more than once when saving, so changes are collected for this long before reloading
+     */
+    private static final long WATCH_DELAY = 500;
+
     private static AntiSwearManager instance;
     private EmbedManager embedManager = EmbedManager.getInstance();
+    private Dizcord dizcord = Dizcord.getInstance();
+    private FileConfiguration config = dizcord.getConfig();
+    private final boolean enabled = config.getBoolean("discord.swear-filter.enabled", true);
+    private final boolean remoteCheck = config.getBoolean("discord.swear-filter.remote-check", false);
+    private final File folder = new File(dizcord.getDataFolder(), "filters");
+    private final AtomicReference<FilterDictionary> dictionary = new AtomicReference<>(FilterDictionary.EMPTY);
+    /**
+     * Loads the filter files one reload at a time, so an older reload can never replace the dictionary of a newer one
+     */
+    private final Scheduler loader = Schedulers.newSingle("Dizcord-Filter-Loader", true);
+    private WatchService watchService;
 
     private AntiSwearManager() {
+        for (String file : new String[]{FilterDictionary.WORDS, FilterDictionary.ALLOWED, FilterDictionary.PATTERNS}) {
+            if (!new File(folder, file).exists()) {
+                dizcord.saveResource("filters/" + file, false);
+            }
+        }
+        if (config.getBoolean("discord.swear-filter.auto-reload", true)) {
+            watch();
+        }
     }
 
     public static AntiSwearManager getInstance() {
         return instance == null ? instance = new AntiSwearManager() : instance;
     }
 
-    public void handleMessage(Message message) {
-        String handledMessage;
-
-        String url = "https://www.purgomalum.com/service/containsprofanity?text=";
+    /**
+     * Checks a message for filtered words, and removes it if it contains any
+     *
+     * @param message The message to check
+     * @param scan    The scan of the message
+     * @return True if the message contained a filtered word and was removed, else false. Messages removed after the
+     * remote check are not reported, as that check finishes later
+     */
+    public boolean handleMessage(Message message, ContentScan scan) {
+        if (!enabled) {
+            return false;
+        }
+        String content = scan.getContent();
+        if (dictionary.get().matches(content)) {
+            remove(message);
+            return true;
+        }
+        // Mentions and emotes are markup, so they are left out of the remote check like the local one skips them
+        String remoteContent = remoteCheck ? scan.replace(" ", RegexPattern.USER, RegexPattern.ROLE, RegexPattern.EMOTES).trim() : "";
+        if (!remoteContent.isEmpty()) {
+            Mono.fromCallable(() -> isSwearRemote(remoteContent))
+                    .subscribeOn(Schedulers.elastic())
+                    .filter(Boolean::booleanValue)
+                    .subscribe(swear -> remove(message), e -> {
+                        System.err.print("An error occurred while checking a message for swear words. See stacktrace below for more information.");
+                        e.printStackTrace();
+                    });
+        }
+        return false;
+    }
 
-        handledMessage = message.getContent().orElse("").replaceAll(RegexPattern.USER.toString(), "");
-        handledMessage = handledMessage.replaceAll(RegexPattern.ROLE.toString(), "");
-        handledMessage = handledMessage.replaceAll(RegexPattern.EMOTES.toString(), "");
-        handledMessage = handledMessage.replaceFirst("(ob!\\s)", "");
-        handledMessage = handledMessage.replaceFirst("assign", "");
+    /**
+     * Loads the filter files again and replaces the current dictionary with them. If the files cannot be loaded, the
+     * current dictionary is kept. Reloads run one after another, in the order they were asked for.
+     *
+     * @return A Mono emitting the new dictionary once it is in use
+     */
+    public Mono<FilterDictionary> reload() {
+        return Mono.fromCallable(() -> FilterDictionary.load(folder))
+                .subscribeOn(loader)
+                .doOnNext(dictionary::set);
+    }
 
+    /**
+     * Stops watching the filter files
+     */
+    public void shutdown() {
+        loader.dispose();
+        if (watchService == null) {
+            return;
+        }
         try {
-            URL filter = new URL(url + URLEncoder.encode(handledMessage, "UTF-8"));
-            URLConnection connection = filter.openConnection();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-            String result;
-            while ((result = reader.readLine()) != null) {
-                boolean isSwear = Boolean.valueOf(result);
-
-                if (isSwear) {
-                    message.delete().subscribe();
-                    message.getAuthor().map(User::getPrivateChannel).map(c -> c.subscribe(channel -> channel.createMessage(spec -> spec.setEmbed(embedManager.swearEmbed()))));
-                    break;
-                }
-            }
+            watchService.close();
+        } catch (IOException e) {
+            System.err.print("An error occurred while closing the filter watcher. See stacktrace below for more information.");
+            e.printStackTrace();
+        }
+    }
 
+    private void watch() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            folder.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
         } catch (IOException e) {
+            System.err.print("An error occurred while watching the filter files. See stacktrace below for more information.");
             e.printStackTrace();
+            return;
         }
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = watchService.take();
+                    do {
+                        key.pollEvents();
+                        key.reset();
+                    } while ((key = watchService.poll(WATCH_DELAY, TimeUnit.MILLISECONDS)) != null);
+                    reload().subscribe(loaded -> dizcord.getLogger().info("The filter files changed and were reloaded"), e -> {
+                        System.err.print("An error occurred while reloading the filter files. See stacktrace below for more information.");
+                        e.printStackTrace();
+                    });
+                }
+            } catch (InterruptedException | ClosedWatchServiceException ignored) {
+                // The plugin is being disabled
+            }
+        }, "Dizcord-Filter-Watcher");
+        thread.setDaemon(true);
+        thread.start();
     }
 
+    private void remove(Message message) {
+        message.delete().subscribe();
+        message.getAuthor().map(User::getPrivateChannel).ifPresent(c -> c.subscribe(channel -> channel.createMessage(spec -> spec.setEmbed(embedManager.swearEmbed())).subscribe()));
+    }
 
-}
\ No newline at end of file
+    private boolean isSwearRemote(String content) throws IOException {
+        URLConnection connection = new URL(REMOTE_URL + URLEncoder.encode(content, "UTF-8")).openConnection();
+        connection.setConnectTimeout(REMOTE_TIMEOUT);
+        connection.setReadTimeout(REMOTE_TIMEOUT);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
+            return Boolean.valueOf(reader.readLine());
+        }
+    }
+}
@@ -5,22 +5,18 @@ import com.github.zaphx.discordbot.utilities.DiscordChannelTypes;
 import discord4j.core.DiscordClient;
 import discord4j.core.event.domain.channel.TextChannelCreateEvent;
 import discord4j.core.event.domain.channel.TextChannelDeleteEvent;
+import discord4j.core.event.domain.channel.TextChannelUpdateEvent;
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.event.domain.message.MessageDeleteEvent;
-import discord4j.core.event.domain.message.MessageEvent;
 import discord4j.core.object.entity.*;
 import discord4j.core.object.util.Snowflake;
 import discord4j.core.spec.EmbedCreateSpec;
-import discord4j.core.spec.MessageCreateSpec;
-import discord4j.rest.json.request.EmbedRequest;
-import gnu.trove.map.TMap;
-import gnu.trove.map.hash.THashMap;
 import org.bukkit.configuration.file.FileConfiguration;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import javax.xml.soap.Text;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
 
 public class ChannelManager {
@@ -28,7 +24,14 @@ public class ChannelManager {
     private static ChannelManager instance;
     private DiscordClientManager clientManager = DiscordClientManager.getInstance();
     private DiscordClient client = clientManager.getClient();
-    private TMap<String, Long> channelMap = new THashMap<>();
+    /**
+     * Every text channel of the guild by its Id, kept up to date by the channel events
+     */
+    private final ConcurrentMap<Long, TextChannel> channels = new ConcurrentHashMap<>();
+    /**
+     * The Id of every text channel of the guild by its name, in lower case
+     */
+    private final ConcurrentMap<String, Long> channelMap = new ConcurrentHashMap<>();
     private Dizcord dizcord = Dizcord.getInstance();
     private FileConfiguration config = dizcord.getConfig();
 
@@ -46,73 +49,112 @@ public class ChannelManager {
 
     /**
      * This method maps all available channels to a map.
+     *
+     * @return A Mono emitting the amount of channels mapped
      */
-    public void mapChannels() {
-        client.getGuildById(Snowflake.of(clientManager.GUILD_Id)).subscribe(guild -> {
-            channelMap.clear();
-            guild.getChannels()
-                    .filter(guildChannel -> guildChannel instanceof TextChannel)
-                    .map(c -> channelMap.put(c.getName(), c.getId().asLong()));
-        });
+    public Mono<Integer> mapChannels() {
+        return client.getGuildById(clientManager.GUILD_SNOWFLAKE)
+                .flatMapMany(Guild::getChannels)
+                .ofType(TextChannel.class)
+                .collectList()
+                .map(list -> {
+                    channels.clear();
+                    channelMap.clear();
+                    list.forEach(this::putChannel);
+                    return list.size();
+                });
     }
 
     /**
-     * Adds a new channel to the THashMap channels.
+     * Adds a new channel to the map of channels.
      *
      * @param event The event to get the channel from.
      */
     public void addChannel(TextChannelCreateEvent event) {
-        TextChannel channel = event.getChannel();
-        channelMap.put(channel.getName(), channel.getId().asLong());
+        putChannel(event.getChannel());
     }
 
     /**
-     * Removes a channel from the THashMap channels.
+     * Replaces a channel in the map of channels, as its name or settings changed.
+     *
+     * @param event The event to get the channel from.
+     */
+    public void updateChannel(TextChannelUpdateEvent event) {
+        TextChannel old = channels.get(event.getCurrent().getId().asLong());
+        if (old != null) {
+            channelMap.remove(old.getName().toLowerCase(), old.getId().asLong());
+        }
+        putChannel(event.getCurrent());
+    }
+
+    /**
+     * Removes a channel from the map of channels.
      *
      * @param event The event to get the channel from.
      */
     public void removeChannel(TextChannelDeleteEvent event) {
-        channelMap.remove(event.getChannel().getName());
+        TextChannel channel = event.getChannel();
+        channels.remove(channel.getId().asLong());
+        channelMap.remove(channel.getName().toLowerCase(), channel.getId().asLong());
+    }
+
+    private void putChannel(TextChannel channel) {
+        channels.put(channel.getId().asLong(), channel);
+        channelMap.put(channel.getName().toLowerCase(), channel.getId().asLong());
+    }
+
+    /**
+     * Gets a channel from the map of channels, or from Discord if it is not a text channel of the guild. This never
+     * blocks for mapped channels.
+     *
+     * @param Id The Id of the channel to look for
+     * @return A Mono emitting the channel, or empty if it does not exist
+     */
+    public Mono<MessageChannel> resolveChannel(Snowflake Id) {
+        TextChannel channel = channels.get(Id.asLong());
+        return channel != null ? Mono.just(channel) : client.getChannelById(Id).ofType(MessageChannel.class);
     }
 
     /**
-     * This method gets a channel by name, from the THashMap channels.
+     * This method gets a channel by name, from the map of channels.
      *
      * @param name The name to look for
      * @return The channel from name if it exists. Else null
      */
     public MessageChannel getChannel(String name) {
-        return channelMap.get(name) != null ? client.getChannelById(Snowflake.of(channelMap.get(name))).cast(TextChannel.class).block() : null;
+        Long Id = channelMap.get(name.toLowerCase());
+        return Id != null ? getChannel(Id) : null;
     }
 
     /**
-     * This method gets a channel by its Id, from the THashMap channels.
+     * This method gets a channel by its Id, from the map of channels.
      *
      * @param Id The Id of the channel to look for
      * @return The channel from the Id provided.
      */
     public MessageChannel getChannel(long Id) {
-        return client.getChannelById(Snowflake.of(Id)).cast(TextChannel.class).block();
+        return getChannel(Snowflake.of(Id));
     }
 
     /**
-     * This method gets a channel by its Id, from the THashMap channels.
+     * This method gets a channel by its Id, from the map of channels.
      *
      * @param Id The Id of the channel to look for
      * @return The channel from the Id provided.
      */
     public MessageChannel getChannel(Snowflake Id) {
-        return client.getChannelById(Id).cast(TextChannel.class).block();
+        TextChannel channel = channels.get(Id.asLong());
+        return channel != null ? channel : resolveChannel(Id).block();
     }
 
     /**
-     * This method gets a channel by type, from the THashMap channels.
+     * This method gets a channel by type, from the map of channels.
      *
      * @param types The DiscordChannelTypes type
      * @return The channel from name if it exists. Else null
      */
     public MessageChannel getChannel(DiscordChannelTypes types) {
-        return client.getChannelById(types.getId()).cast(TextChannel.class).block();
+        return getChannel(types.getId());
     }
 
     /**
@@ -165,7 +207,7 @@ public class ChannelManager {
      * @param message The message to send
      */
     public void sendMessageToChannel(MessageCreateEvent event, String message) {
-        Mono.justOrEmpty(event).flatMap(e -> e.getMessage().getChannel().map(messageChannel -> messageChannel.createMessage(message))).subscribe();
+        sendMessageToChannel(event.getMessage().getChannelId(), message);
     }
 
     /**
@@ -175,7 +217,7 @@ public class ChannelManager {
      * @param message The message to send
      */
     public void sendMessageToChannel(MessageCreateEvent event, Consumer<EmbedCreateSpec> message) {
-        event.getMessage().getChannel().map(messageChannel -> messageChannel.createMessage(message.toString())).subscribe();
+        sendMessageToChannel(event.getMessage().getChannelId(), message);
     }
 
     /**
@@ -185,7 +227,7 @@ public class ChannelManager {
      * @param message The message to send
      */
     public void sendMessageToChannel(MessageDeleteEvent event, String message) {
-        Mono.justOrEmpty(event).flatMap(e -> e.getChannel().map(messageChannel -> messageChannel.createMessage(message))).subscribe();
+        sendMessageToChannel(event.getChannelId(), message);
     }
 
     /**
@@ -195,7 +237,7 @@ public class ChannelManager {
      * @param message The message to send
      */
     public void sendMessageToChannel(MessageDeleteEvent event, Consumer<EmbedCreateSpec> message) {
-        Mono.justOrEmpty(event).flatMap(e -> e.getChannel().map(messageChannel -> messageChannel.createMessage(message.toString()))).subscribe();
+        sendMessageToChannel(event.getChannelId(), message);
     }
 
     /**
@@ -225,7 +267,7 @@ public class ChannelManager {
      * @param embed The message to send
      */
     public void sendMessageToChannel(DiscordChannelTypes channel, Consumer<EmbedCreateSpec> embed) {
-        channel.getChannel().createMessage(m -> m.setEmbed(embed)).subscribe();
+        sendMessageToChannel(channel.getId(), embed);
     }
 
     /**
@@ -235,7 +277,7 @@ public class ChannelManager {
      * @param message The message to send
      */
     public void sendMessageToChannel(DiscordChannelTypes channel, String message) {
-        channel.getChannel().createMessage(message).subscribe();
+        sendMessageToChannel(channel.getId(), message);
     }
 
     /**
@@ -245,7 +287,7 @@ public class ChannelManager {
      * @param embed The message to send
      */
     public void sendMessageToChannel(long id, Consumer<EmbedCreateSpec> embed) {
-        client.getChannelById(Snowflake.of(id)).cast(MessageChannel.class).map(messageChannel -> messageChannel.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(embed))).subscribe();
+        sendMessageToChannel(Snowflake.of(id), embed);
     }
 
     /**
@@ -255,7 +297,7 @@ public class ChannelManager {
      * @param message The message to send
      */
     public void sendMessageToChannel(long id, String message) {
-        client.getChannelById(Snowflake.of(id)).cast(MessageChannel.class).map(messageChannel -> messageChannel.createMessage(message)).subscribe();
+        sendMessageToChannel(Snowflake.of(id), message);
     }
 
     /**
@@ -265,7 +307,7 @@ public class ChannelManager {
      * @param embed The message to send
      */
     public void sendMessageToChannel(Snowflake id, Consumer<EmbedCreateSpec> embed) {
-        client.getChannelById(id).cast(MessageChannel.class).map(messageChannel -> messageChannel.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(embed))).subscribe();
+        resolveChannel(id).flatMap(messageChannel -> messageChannel.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(embed))).subscribe();
     }
 
     /**
@@ -275,7 +317,7 @@ public class ChannelManager {
      * @param message The message to send
      */
     public void sendMessageToChannel(Snowflake id, String message) {
-        client.getChannelById(id).cast(MessageChannel.class).map(messageChannel -> messageChannel.createMessage(message)).subscribe();
+        resolveChannel(id).flatMap(messageChannel -> messageChannel.createMessage(message)).subscribe();
     }
 
     /**
@@ -285,7 +327,10 @@ public class ChannelManager {
      * @param embed The message to send
      */
     public void sendMessageToChannel(String name, Consumer<EmbedCreateSpec> embed) {
-        client.getChannelById(Snowflake.of(channelMap.get(name))).cast(MessageChannel.class).map(messageChannel -> messageChannel.createMessage(messageCreateSpec -> messageCreateSpec.setEmbed(embed))).subscribe();
+        Long id = channelMap.get(name.toLowerCase());
+        if (id != null) {
+            sendMessageToChannel(id, embed);
+        }
     }
 
     /**
@@ -295,6 +340,9 @@ public class ChannelManager {
      * @param message The message to send
      */
     public void sendMessageToChannel(String name, String message) {
-        client.getChannelById(Snowflake.of(channelMap.get(name))).cast(MessageChannel.class).map(messageChannel -> messageChannel.createMessage(message)).subscribe();
+        Long id = channelMap.get(name.toLowerCase());
+        if (id != null) {
+            sendMessageToChannel(id, message);
+        }
     }
 }
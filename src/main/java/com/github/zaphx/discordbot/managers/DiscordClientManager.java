@@ -4,14 +4,12 @@ import com.github.zaphx.discordbot.Dizcord;
 import discord4j.core.DiscordClient;
 import discord4j.core.DiscordClientBuilder;
 import discord4j.core.ServiceMediator;
-import discord4j.core.object.entity.Guild;
 import discord4j.core.object.entity.Member;
 import discord4j.core.object.util.Permission;
 import discord4j.core.object.util.Snowflake;
 import org.bukkit.Bukkit;
 
 import java.lang.reflect.Field;
-import java.util.Objects;
 
 public class DiscordClientManager {
 
@@ -70,9 +68,7 @@ public class DiscordClientManager {
      * @return True if the client has permission, else false
      */
     public boolean clientHasPermission(Permission permission) {
-        Guild guild = client.getGuildById(Snowflake.of(GUILD_Id)).block();   // getGuildById(Dizcord.getInstance().getConfig().getLong("discord.guild-id"));
-        Member ourUser = Objects.requireNonNull(guild).getMemberById(client.getSelfId().get()).block();
-        return ourUser != null && Objects.requireNonNull(ourUser.getBasePermissions().block()).contains(permission); // getOurUser().getPermissionsForGuild(guild).contains(permission);
+        return PermissionManager.getInstance().clientHasPermission(permission);
     }
 
     /**
@@ -85,7 +81,7 @@ public class DiscordClientManager {
     }
 
     public Member getSelf() {
-        return client.getSelf().cast(Member.class).block();
+        return client.getMemberById(GUILD_SNOWFLAKE, client.getSelfId().orElseThrow(NullPointerException::new)).block();
     }
 
     public ServiceMediator getServiceMediator() {
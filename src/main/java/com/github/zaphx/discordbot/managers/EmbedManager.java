@@ -4,7 +4,6 @@ import com.github.zaphx.discordbot.Dizcord;
 import com.github.zaphx.discordbot.utilities.ArgumentException;
 import com.github.zaphx.discordbot.utilities.DiscordChannelTypes;
 import discord4j.core.event.domain.message.MessageCreateEvent;
-import discord4j.core.object.ExtendedInvite;
 import discord4j.core.object.entity.*;
 import discord4j.core.object.util.Image;
 import discord4j.core.object.util.Snowflake;
@@ -15,13 +14,11 @@ import reactor.core.publisher.Mono;
 import java.awt.*;
 import java.time.Instant;
 import java.util.List;
-import java.util.Objects;
 import java.util.function.Consumer;
 
 public class EmbedManager {
 
     private static EmbedManager instance;
-    private final SQLManager sql = SQLManager.getInstance();
     private final Dizcord dizcord = Dizcord.getInstance();
     private final DiscordClientManager clientManager = DiscordClientManager.getInstance();
     private final Color WARNING = new Color(242, 56, 79);
@@ -35,15 +32,12 @@ public class EmbedManager {
         return instance == null ? instance = new EmbedManager() : instance;
     }
 
-    public Consumer<EmbedCreateSpec> warningToUser(User warned, User warnee, String reason, Mono<Guild> guild) {
-        long tickedId = sql.countTickets("warnings");
-        TextChannel rulesChannel = guild.block().getChannelById(DiscordChannelTypes.RULES.getId()).cast(TextChannel.class).block();
-
+    public Consumer<EmbedCreateSpec> warningToUser(User warned, User warnee, String reason, long tickedId, Mono<Guild> guild) {
         return embedCreateSpec -> embedCreateSpec.setTitle("__**Warning**__")
                 .setDescription("You have been warned for " + reason + "." +
                         "\nYour ticket Id is: **" + tickedId + "**." +
                         "\nYou were warned by: **" + warnee.getUsername() + "**" +
-                        "\nPlease make sure you have read the rules in " + rulesChannel.getMention() + "." +
+                        "\nPlease make sure you have read the rules in " + "<#" + DiscordChannelTypes.RULES.getId().asString() + ">" + "." +
                         "\nIf you believe this is a mistake, please report it to the owner of the server, with a screenshot of this message.")
                 .setColor(WARNING)
                 .setFooter(warned.getUsername(), warned.getAvatarUrl())
@@ -51,9 +45,7 @@ public class EmbedManager {
                 .setAuthor(guild.block().getName(), null, guild.block().getIconUrl(Image.Format.JPEG).orElseThrow(IllegalArgumentException::new));
     }
 
-    public Consumer<EmbedCreateSpec> warningToChannel(User warned, User warnee, String reason, Guild guild, MessageChannel destination) {
-        long ticketId = sql.countTickets("warnings");
-
+    public Consumer<EmbedCreateSpec> warningToChannel(User warned, User warnee, String reason, long ticketId, Guild guild, MessageChannel destination) {
         return embedCreateSpec -> embedCreateSpec.setTitle("__**Warning**__")
                 .setDescription("**User warned:** " + warned.getUsername() + "#" + warned.getDiscriminator() +
                         "\n**Ticket Id:** " + ticketId + ". " +
@@ -83,6 +75,15 @@ public class EmbedManager {
                 .setTimestamp(Instant.now());
     }
 
+    public Consumer<EmbedCreateSpec> rateLimited() {
+
+        return embedCreateSpec -> embedCreateSpec
+                .setTitle("Slow down")
+                .setDescription("You are using this command too often! Please wait a moment before trying again.")
+                .setColor(WARNING)
+                .setTimestamp(Instant.now());
+    }
+
     public Consumer<EmbedCreateSpec> insufficientPermissions() {
 
         return embedCreateSpec -> embedCreateSpec
@@ -110,37 +111,62 @@ public class EmbedManager {
                 .setTimestamp(Instant.now());
     }
 
-    public Consumer<EmbedCreateSpec> joinEmbed(ExtendedInvite invite, Member joined) {
+    public Consumer<EmbedCreateSpec> joinEmbed(InviteManager.InviteUse invite, Member joined) {
 
         return embedCreateSpec -> embedCreateSpec
                 .setTimestamp(Instant.now())
                 .setTitle("**A user joined the guild**")
                 .setThumbnail(joined.getAvatarUrl())
                 .addField("User:", joined.getDisplayName() + " (" + joined.getUsername() + ")", false)
-                .addField("With invite", invite.getCode(), true)
-                .addField("Invite by user", invite.getInviter().map(User::getMention).blockOptional().orElseThrow(NoSuchFieldError::new), true)
+                .addField("With invite", invite == null ? "Unknown" : invite.getCode() + (invite.isCertain() ? "" : " (probably)"), true)
+                .addField("Invite by user", invite == null ? "Unknown" : "<@" + Long.toUnsignedString(invite.getInviterId()) + ">", true)
                 .setColor(NEUTRAL);
     }
 
+    public Consumer<EmbedCreateSpec> raidDetected(String reason, int joins, int window) {
+
+        return embedCreateSpec -> embedCreateSpec
+                .setTimestamp(Instant.now())
+                .setTitle("**Raid detected**")
+                .setDescription(joins + " " + reason + " in " + window + " seconds."
+                        + "\nJoins are summarized until the raid is over.")
+                .setColor(WARNING);
+    }
+
+    public Consumer<EmbedCreateSpec> raidSummary(int joins, int total, String invites, String ages, long minutes, boolean ended) {
+
+        return embedCreateSpec -> embedCreateSpec
+                .setTimestamp(Instant.now())
+                .setTitle(ended ? "**Raid over**" : "**Raid in progress**")
+                .setDescription(joins + " members joined since the last summary, " + total + " in total over " + minutes + " minute(s).")
+                .addField("Invites", invites.isEmpty() ? "None known" : invites, false)
+                .addField("Account ages", ages.isEmpty() ? "Not counted" : ages, false)
+                .setColor(ended ? NEUTRAL : WARNING);
+    }
+
     public Consumer<EmbedCreateSpec> messageDeleteEmbed(THashMap<String, String> message) {
-        String content = message.get("content").replaceAll("¼", "'");
-        Mono<User> author = clientManager.getClient().getUserById(Snowflake.of(Long.parseLong(message.get("author"))));
-        Mono<TextChannel> targetChannel = clientManager.getClient().getChannelById(Snowflake.of(Long.parseLong(message.get("channel")))).cast(TextChannel.class);
+        String content = message.get("content");
+        // The author is only fetched once, however often the embed is built
+        Mono<User> author = clientManager.getClient().getUserById(Snowflake.of(Long.parseLong(message.get("author")))).cache();
+        String channel = "<#" + message.get("channel") + ">";
         String Id = message.get("id");
         if (content.isEmpty()) {
             content = "Embed";
         }
         String finalContent = content;
-        return embedCreateSpec -> embedCreateSpec
-                .setTimestamp(Instant.now())
-                .setTitle("**A message was deleted**")
-                .addField("Author", Objects.requireNonNull(author.block()).getUsername() + " (" + Objects.requireNonNull(author.block()).getMention() + ")", true)
-                //.addField("Deleter", deleter.getMention(), true)
-                .addField("Channel", targetChannel.map(TextChannel::getMention).blockOptional().orElseThrow(ArgumentException::new), true)
-                .addField("Message id", Id, true)
-                .addField("Message content", finalContent, false)
-                .setThumbnail(author.map(User::getAvatarUrl).blockOptional().orElseThrow(IllegalArgumentException::new))
-                .setColor(WARNING);
+        return embedCreateSpec -> {
+            User user = author.blockOptional().orElseThrow(ArgumentException::new);
+            embedCreateSpec
+                    .setTimestamp(Instant.now())
+                    .setTitle("**A message was deleted**")
+                    .addField("Author", user.getUsername() + " (" + user.getMention() + ")", true)
+                    //.addField("Deleter", deleter.getMention(), true)
+                    .addField("Channel", channel, true)
+                    .addField("Message id", Id, true)
+                    .addField("Message content", finalContent, false)
+                    .setThumbnail(user.getAvatarUrl())
+                    .setColor(WARNING);
+        };
     }
 
     public Consumer<EmbedCreateSpec> banToChannel(Member banned, Member bannee, String reason) {
@@ -333,17 +359,18 @@ public class EmbedManager {
                 .addField("Your suggestion was:", message.getContent().orElseThrow(ArgumentException::new), false);
     }
 
-    public Consumer<EmbedCreateSpec> muteEmbed(String reason, String time, User muter) {
+    public Consumer<EmbedCreateSpec> muteEmbed(String reason, String time, long ticketId, User muter) {
 
         return embedCreateSpec -> embedCreateSpec.setColor(NEUTRAL)
                 .setTimestamp(Instant.now())
                 .setTitle("You have been muted!")
                 .addField("Muted by", muter.getMention(), true)
                 .addField("Muted for", time, true)
+                .addField("Ticket Id", String.valueOf(ticketId), true)
                 .addField("Reason", reason, false);
     }
 
-    public Consumer<EmbedCreateSpec> logMuteEmbed(String reason, String time, User muter, User muted) {
+    public Consumer<EmbedCreateSpec> logMuteEmbed(String reason, String time, long ticketId, User muter, User muted) {
 
         return embedCreateSpec -> embedCreateSpec.setColor(NEUTRAL)
                 .setTimestamp(Instant.now())
@@ -351,6 +378,7 @@ public class EmbedManager {
                 .addField("Muted", muted.getMention(), true)
                 .addField("Muted by", muter.getMention(), true)
                 .addField("Muted for", time, true)
+                .addField("Ticket Id", String.valueOf(ticketId), true)
                 .addField("Reason", reason, false);
     }
 
@@ -3,28 +3,57 @@ package com.github.zaphx.discordbot.managers;
 import com.github.zaphx.discordbot.Dizcord;
 import discord4j.core.DiscordClient;
 import discord4j.core.object.ExtendedInvite;
-import discord4j.core.object.entity.Member;
-import discord4j.core.object.util.Snowflake;
-import org.bukkit.Bukkit;
+import discord4j.core.object.entity.Guild;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.TObjectLongMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import gnu.trove.map.hash.TObjectLongHashMap;
 import org.bukkit.configuration.file.FileConfiguration;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.UnicastProcessor;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.TreeMap;
 
+/**
+ * Works out which invite a member joined with. The uses of every invite are kept in a snapshot, and when members join,
+ * the invites are fetched again and compared to it. Members that join within a short window of each other share a
+ * single fetch, so a wave of joins costs one request rather than one per member. Fetches run one after another, so a
+ * slow fetch can never replace the snapshot of a later one and have the same uses counted twice.
+ * <p>
+ * The gateway does not tell the client about created or deleted invites, so those are found by the same comparison:
+ * an invite missing from the snapshot is new, and an invite that disappeared one use short of its limit was used up.
+ */
 public class InviteManager {
 
     private static InviteManager instance;
-    private Map<String, Integer> inviteMap = new TreeMap<>();
-    private Map<String, Integer> tempInviteMap = new TreeMap<>();
-    private Map<String, ExtendedInvite> inviteObjectMap = new TreeMap<>();
     private DiscordClientManager clientManager = DiscordClientManager.getInstance();
     private DiscordClient client = clientManager.getClient();
     private Dizcord dizcord = Dizcord.getInstance();
     private FileConfiguration config = dizcord.getConfig();
+    /**
+     * How long to wait for more members to join before fetching the invites
+     */
+    private final Duration debounce = Duration.ofMillis(config.getLong("discord.invites.debounce", 2000));
+    private Snapshot snapshot = new Snapshot(new ArrayList<>());
+    /**
+     * The fetch the next members to join will share, or null if there is none waiting
+     */
+    private Window window;
+    /**
+     * Fetches waiting to run. They run one at a time, in the order they were queued
+     */
+    private final FluxSink<Mono<?>> fetches;
 
     private InviteManager() {
+        UnicastProcessor<Mono<?>> queue = UnicastProcessor.create();
+        fetches = queue.sink();
+        // A failed fetch has already reported its error, and must not stop the ones after it
+        queue.concatMap(fetch -> fetch.onErrorResume(e -> Mono.empty())).subscribe();
     }
 
     /**
@@ -36,59 +65,166 @@ public class InviteManager {
     }
 
     /**
-     * Updates the stored guild invites
+     * Updates the stored guild invites. The fetch is queued right away, behind any fetch that is already running
+     *
+     * @return A Mono emitting the amount of invites
      */
-    public void update() {
-        List<ExtendedInvite> invites = client.getGuildById(Snowflake.of(clientManager.GUILD_Id)).block().getInvites().collectList().block();//getGuildById(config.getLong("discord.guild-id")).getExtendedInvites();
-        System.out.println("Found " + invites.size() + " invites. They are now registered");
-        for (ExtendedInvite inv : invites) {
-            inviteMap.put(inv.getCode(), inv.getUses());
-            inviteObjectMap.put(inv.getCode(), inv);
-        }
+    public Mono<Integer> update() {
+        MonoProcessor<Integer> result = MonoProcessor.create();
+        fetches.next(fetch().map(invites -> {
+            Snapshot current = new Snapshot(invites);
+            synchronized (this) {
+                snapshot = current;
+            }
+            return invites.size();
+        }).doOnNext(result::onNext).doOnError(result::onError).doOnSuccess(count -> result.onComplete()));
+        return result;
     }
 
     /**
-     * Gets the change in invites
-     * @return A newly created invite
+     * Works out which invite a member that just joined used
+     *
+     * @return A Mono emitting the invite, or an empty Mono if it could not be worked out
      */
-    private ExtendedInvite getInviteChange() {
-        List<ExtendedInvite> invites = client.getGuildById(Snowflake.of(clientManager.GUILD_Id))
-                .block().getInvites().collectList().block(); //getGuildById(config.getLong("discord.guild-id")).getExtendedInvites();
-        if (invites.size() > inviteObjectMap.size()) {
-            // new invite created
-            for (ExtendedInvite invite : invites) {
-                if (inviteObjectMap.get(invite.getCode()) == null) {
-                    update();
-                    return invite;
-                }
+    public Mono<InviteUse> getInvite() {
+        Window current;
+        int position;
+        synchronized (this) {
+            if (window == null) {
+                window = new Window();
+                Window opened = window;
+                Mono.delay(debounce, Schedulers.elastic()).subscribe(tick -> close(opened));
             }
+            current = window;
+            position = current.joins++;
         }
-        for (ExtendedInvite inv : invites) {
-            tempInviteMap.put(inv.getCode(), inv.getUses());
-            inviteObjectMap.put(inv.getCode(), inv);
+        return current.result.flatMap(uses -> Mono.justOrEmpty(position < uses.size() ? uses.get(position) : null));
+    }
+
+    /**
+     * Fetches the invites once for every member that joined during the window, and hands out the uses found
+     */
+    private void close(Window closing) {
+        synchronized (this) {
+            window = null;
         }
-        for (Map.Entry<String, Integer> entry : inviteMap.entrySet()) {
-            if (!tempInviteMap.get(entry.getKey()).equals(inviteMap.get(entry.getKey()))) {
-                return inviteObjectMap.get(entry.getKey());
+        fetches.next(fetch().map(invites -> {
+            Snapshot current = new Snapshot(invites);
+            Snapshot previous;
+            synchronized (this) {
+                previous = snapshot;
+                snapshot = current;
             }
+            return previous.usesSince(current);
+        }).defaultIfEmpty(new ArrayList<>()).doOnNext(closing.result::onNext).doOnError(e -> {
+            System.err.print("An error occurred while fetching the guild invites. See stacktrace below for more information.");
+            e.printStackTrace();
+            closing.result.onNext(new ArrayList<>());
+        }));
+    }
+
+    private Mono<List<ExtendedInvite>> fetch() {
+        return client.getGuildById(clientManager.GUILD_SNOWFLAKE)
+                .flatMapMany(Guild::getInvites)
+                .collectList();
+    }
+
+    /**
+     * An invite that was used to join
+     */
+    public static final class InviteUse {
+
+        private final String code;
+        private final long inviterId;
+        private final boolean certain;
+
+        private InviteUse(String code, long inviterId, boolean certain) {
+            this.code = code;
+            this.inviterId = inviterId;
+            this.certain = certain;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        /**
+         * @return The Id of the user that created the invite
+         */
+        public long getInviterId() {
+            return inviterId;
+        }
+
+        /**
+         * @return False if several invites were used by members joining at the same time, so the members may have
+         * been matched to the wrong ones
+         */
+        public boolean isCertain() {
+            return certain;
         }
-        Bukkit.getScheduler().runTaskLater(dizcord, this::getInviteChange, 40L);
-        return null;
     }
 
     /**
-     * Get who created an invite
-     * @return User who created invite
+     * The uses of every invite at one point in time. A snapshot is never changed, only replaced by a newer one
      */
-    public Member getUserCreated() {
-        return Objects.requireNonNull(getInviteChange()).getInviter().block().asMember(Snowflake.of(clientManager.GUILD_Id)).block();
+    private static final class Snapshot {
+
+        private final TObjectIntMap<String> uses = new TObjectIntHashMap<>();
+        private final TObjectIntMap<String> maxUses = new TObjectIntHashMap<>();
+        private final TObjectLongMap<String> inviters = new TObjectLongHashMap<>();
+
+        private Snapshot(List<ExtendedInvite> invites) {
+            for (ExtendedInvite invite : invites) {
+                uses.put(invite.getCode(), invite.getUses());
+                maxUses.put(invite.getCode(), invite.getMaxUses());
+                inviters.put(invite.getCode(), invite.getInviterId().asLong());
+            }
+        }
+
+        /**
+         * Compares a newer snapshot to this one
+         *
+         * @return One use for every time an invite was used in between, grouped by invite
+         */
+        private List<InviteUse> usesSince(Snapshot newer) {
+            List<String> codes = new ArrayList<>();
+            TObjectIntMap<String> counts = new TObjectIntHashMap<>();
+            newer.uses.forEachEntry((code, count) -> {
+                // Invites missing from this snapshot were created since
+                int delta = count - (uses.containsKey(code) ? uses.get(code) : 0);
+                if (delta > 0) {
+                    codes.add(code);
+                    counts.put(code, delta);
+                }
+                return true;
+            });
+            uses.forEachEntry((code, count) -> {
+                // Discord deletes an invite once it reaches its limit
+                if (!newer.uses.containsKey(code) && maxUses.get(code) > 0 && count + 1 == maxUses.get(code)) {
+                    codes.add(code);
+                    counts.put(code, 1);
+                }
+                return true;
+            });
+            boolean certain = codes.size() <= 1;
+            List<InviteUse> result = new ArrayList<>();
+            for (String code : codes) {
+                long inviter = newer.inviters.containsKey(code) ? newer.inviters.get(code) : inviters.get(code);
+                for (int i = 0; i < counts.get(code); i++) {
+                    result.add(new InviteUse(code, inviter, certain));
+                }
+            }
+            return result;
+        }
     }
 
     /**
-     * Gets an invite
-     * @return An invite
+     * Members that joined close enough together to share a fetch. Members are matched to the uses found in the order
+     * they joined
      */
-    public ExtendedInvite getInvite() {
-        return getInviteChange();
+    private static final class Window {
+
+        private final MonoProcessor<List<InviteUse>> result = MonoProcessor.create();
+        private int joins;
     }
 }
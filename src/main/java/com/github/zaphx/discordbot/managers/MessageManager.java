@@ -1,20 +1,27 @@
 package com.github.zaphx.discordbot.managers;
 
 import com.github.zaphx.discordbot.Dizcord;
+import com.github.zaphx.discordbot.cache.MessageCache;
+import com.github.zaphx.discordbot.discord.MessageBackfill;
+import com.github.zaphx.discordbot.discord.log.LogPriority;
+import com.github.zaphx.discordbot.discord.log.LogQueue;
+import com.github.zaphx.discordbot.sql.ArchivedMessage;
 import com.github.zaphx.discordbot.utilities.DiscordChannelTypes;
 import discord4j.core.DiscordClient;
 import discord4j.core.object.audit.ActionType;
 import discord4j.core.object.audit.AuditLogEntry;
 import discord4j.core.object.entity.*;
-import discord4j.core.object.util.Snowflake;
 import discord4j.core.spec.EmbedCreateSpec;
-import gnu.trove.map.TMap;
+import gnu.trove.map.TIntLongMap;
+import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.THashMap;
+import gnu.trove.map.hash.TIntLongHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.time.Instant;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicReference;
@@ -22,14 +29,20 @@ import java.util.function.Consumer;
 
 public class MessageManager {
 
-    public TMap<Integer, Player> hashes = new THashMap<>();
-    public TMap<Integer, Member> discord = new THashMap<>();
+    public TIntObjectMap<Player> hashes = new TIntObjectHashMap<>();
+    /**
+     * The Id of the Discord member that requested each pending link
+     */
+    public TIntLongMap discord = new TIntLongHashMap();
     private DiscordClientManager clientManager = DiscordClientManager.getInstance();
     private DiscordClient client = clientManager.getClient();
     private FileConfiguration config = Dizcord.getInstance().getConfig();
-    private TMap<Long, Message> messages = new THashMap<>();
+    private MessageCache messages = new MessageCache(
+            config.getInt("discord.message-cache.messages-per-channel", 500),
+            config.getInt("discord.message-cache.max-messages", 50000));
     private List<AuditLogEntry> log;
     private SQLManager sqlManager = SQLManager.getInstance();
+    private MessageBackfill backfill = new MessageBackfill(messages);
 
     private static MessageManager instance;
     private EmbedManager embedManager;
@@ -54,88 +67,133 @@ public class MessageManager {
     }
 
     /**
-     * Sends a message to the log channel set in the config
+     * Queues a message for the log channel set in the config
      *
      * @param message The message to send
      */
     public void log(String message) {
-        client.getChannelById(DiscordChannelTypes.LOG.getId()).cast(MessageChannel.class)
-                .flatMap(messageChannel -> messageChannel.createMessage(message)).subscribe();
+        LogQueue.of(DiscordChannelTypes.LOG.getId()).add(message, LogPriority.INFO);
     }
 
     /**
-     * Sends a message to the log channel set in the config
+     * Queues a message for the log channel set in the config
      *
      * @param embed The message to send
      */
     public void log(Consumer<EmbedCreateSpec> embed) {
-        client.getChannelById(DiscordChannelTypes.LOG.getId())
-                .cast(MessageChannel.class)
-                .flatMap(messageChannel -> messageChannel.createMessage(messageCreateSpec -> {
-                    messageCreateSpec.setEmbed(embed);
-                })).subscribe();
+        log(embed, LogPriority.INFO);
+    }
+
+    /**
+     * Queues a message for the log channel set in the config. Messages queued together may be sent as one
+     *
+     * @param embed    The message to send
+     * @param priority The priority of the message
+     */
+    public void log(Consumer<EmbedCreateSpec> embed, LogPriority priority) {
+        LogQueue.of(DiscordChannelTypes.LOG.getId()).add(embed, priority);
     }
 
     /**
-     * Sends a message to the audit log channel set in the config
+     * Queues a message for the audit log channel set in the config
      *
      * @param message The message to send
      */
     public void auditlog(String message) {
-        client.getChannelById(DiscordChannelTypes.AUDIT_LOG.getId())
-                .cast(MessageChannel.class)
-                .flatMap(messageChannel -> messageChannel.createMessage(message)).subscribe();
+        LogQueue.of(DiscordChannelTypes.AUDIT_LOG.getId()).add(message, LogPriority.INFO);
     }
 
     /**
-     * Sends a message to the audit log channel set in the config
+     * Queues a message for the audit log channel set in the config
      *
      * @param embed The message to send
      */
     public void auditlog(Consumer<EmbedCreateSpec> embed) {
-        client.getChannelById(DiscordChannelTypes.AUDIT_LOG.getId()).cast(MessageChannel.class)
-                .flatMap(messageChannel -> messageChannel.createMessage(messageCreateSpec -> {
-                    messageCreateSpec.setEmbed(embed);
-                })).subscribe();
+        auditlog(embed, LogPriority.INFO);
     }
 
     /**
-     * 200 messages from every channel. This is to retrieve them when a message is deleted
+     * Queues a message for the audit log channel set in the config. Messages queued together may be sent as one
+     *
+     * @param embed    The message to send
+     * @param priority The priority of the message
+     */
+    public void auditlog(Consumer<EmbedCreateSpec> embed, LogPriority priority) {
+        LogQueue.of(DiscordChannelTypes.AUDIT_LOG.getId()).add(embed, priority);
+    }
+
+    /**
+     * Archives the messages sent in every channel since the last checkpoint, up to 200 per channel by default.
+     * This is to retrieve them when a message is deleted. The work happens in the background.
      */
     public void setMessages() {
-        for (TextChannel channel : Objects.requireNonNull(client.getGuildById(clientManager.GUILD_SNOWFLAKE)
-                .flatMap(guild -> guild.getChannels()
-                        .filter(guildChannel -> guildChannel instanceof TextChannel)
-                        .cast(TextChannel.class)
-                        .collectList()).block())) {
-            for (Message message : Objects.requireNonNull(channel.getMessagesBefore(Snowflake.of(Instant.now())).take(200).collectList().block())) {
-                sqlManager.executeStatementAndPost("INSERT INTO " + sqlManager.prefix + "messages (id, content, author, author_name, channel) VALUES ('%s','%s','%s','%s','%s') \nON DUPLICATE KEY UPDATE content = '%s'",
-                        message.getId().asString(),
-                        message.getContent().orElse("").replaceAll("'", "¼"),
-                        message.getAuthor().map(a-> a.getId().asString()).get(),
-                        message.getAuthor().map(User::getUsername).get(),
-                        Objects.requireNonNull(message.getChannel().block()).getId().asString(),
-                        message.getContent().orElse("").replaceAll("'", "¼"));
-            }
-        }
+        long start = System.currentTimeMillis();
+        mapMessages().subscribe(count -> Dizcord.getInstance().getLog().info("Archived " + count + " messages in " + (System.currentTimeMillis() - start) + "ms"));
+    }
+
+    /**
+     * Archives the messages sent in every channel since the last checkpoint
+     *
+     * @return The amount of messages archived
+     */
+    public Mono<Long> mapMessages() {
+        return backfill.run();
     }
 
     /**
-     * Gets a deleted message and the information associated with it
+     * Gets a deleted message and the information associated with it. The message is looked up in the message cache
+     * first, and only looked up in the database if it is not cached.
      *
      * @param id The id of the message to look for
-     * @return A THashMap with the information associated with the message
+     * @return A THashMap with the information associated with the message. The map is empty if the message is unknown
      */
-    public THashMap<String, String> getDeletedMessage(String id) {
-        return sqlManager.getDeletedMessage(id);
+    public Mono<THashMap<String, String>> getDeletedMessage(String id) {
+        ArchivedMessage cached = messages.remove(Long.parseLong(id));
+        if (cached == null) {
+            return sqlManager.getDeletedMessage(Long.parseLong(id));
+        }
+        sqlManager.deleteMessage(cached.getId());
+        THashMap<String, String> message = new THashMap<>();
+        message.put("id", id);
+        message.put("content", cached.getContent());
+        message.put("author", Long.toUnsignedString(cached.getAuthor()));
+        message.put("authorName", cached.getAuthorName());
+        message.put("channel", Long.toUnsignedString(cached.getChannel()));
+        return Mono.just(message);
     }
 
     /**
-     * Adds a message to the SQL database
+     * Adds a message to the message cache and the SQL database
      *
      * @param message the message to add
      */
     public void addMessage(Message message) {
-        sqlManager.addMessage(message);
+        ArchivedMessage archived = ArchivedMessage.of(message);
+        messages.put(archived);
+        sqlManager.addMessage(archived);
+    }
+
+    /**
+     * Changes the content of a message in the message cache and the SQL database
+     *
+     * @param id      The id of the message
+     * @param content The new content of the message
+     */
+    public void editMessage(long id, String content) {
+        ArchivedMessage updated = messages.update(id, content);
+        if (updated != null) {
+            sqlManager.addMessage(updated);
+        } else {
+            sqlManager.updateMessageContent(id, content).subscribe();
+        }
+    }
+
+    /**
+     * Forgets the cached messages of a channel
+     *
+     * @param channel The id of the channel
+     */
+    public void removeChannel(long channel) {
+        messages.removeChannel(channel);
     }
 }
@@ -0,0 +1,130 @@
+package com.github.zaphx.discordbot.managers;
+
+import com.github.zaphx.discordbot.Dizcord;
+import com.github.zaphx.discordbot.sql.ActiveMute;
+import discord4j.core.object.util.Snowflake;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.logging.Level;
+
+/**
+ * Lifts mutes when they expire. Every active mute is kept in a delay queue, which a background thread takes from as
+ * soon as a mute expires. Mutes that expire together are lifted together and removed from the database in one batch.
+ */
+public class MuteManager {
+
+    private static MuteManager instance;
+    private final DelayQueue<ActiveMute> mutes = new DelayQueue<>();
+    /**
+     * The tickets of the mutes that expired, but have not been removed from the database yet. Guarded by this manager.
+     */
+    private final TLongSet lifting = new TLongHashSet();
+    private final DiscordClientManager clientManager = DiscordClientManager.getInstance();
+    private final SQLManager sql = SQLManager.getInstance();
+    private final Thread thread = new Thread(this::run, "Dizcord-Mute-Expiry");
+    private volatile boolean running;
+
+    private MuteManager() {
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Gets the instance of the MuteManager
+     *
+     * @return A new instance if one does not exist, else the instance
+     */
+    public static MuteManager getInstance() {
+        return instance == null ? instance = new MuteManager() : instance;
+    }
+
+    /**
+     * Loads every active mute from the database and starts lifting them. Mutes that expired while the bot was offline are lifted right away.
+     *
+     * @return A Mono emitting the amount of active mutes
+     */
+    public Mono<Integer> load() {
+        return sql.getMutes().map(loaded -> {
+            // The client fires a ready event on every reconnect, so only mutes that are not queued or being lifted yet
+            // are added. Mutes scheduled while the database was read are kept
+            synchronized (this) {
+                TLongSet known = new TLongHashSet(lifting);
+                for (ActiveMute mute : mutes) {
+                    known.add(mute.getTicket());
+                }
+                for (ActiveMute mute : loaded) {
+                    if (known.add(mute.getTicket())) {
+                        mutes.add(mute);
+                    }
+                }
+            }
+            if (!running) {
+                running = true;
+                thread.start();
+            }
+            return loaded.size();
+        });
+    }
+
+    /**
+     * Schedules a new mute to be lifted when it expires
+     *
+     * @param mute The mute to schedule
+     */
+    public synchronized void schedule(ActiveMute mute) {
+        mutes.add(mute);
+    }
+
+    /**
+     * Stops lifting mutes. Mutes that have not been lifted stay in the database and are loaded again on the next start.
+     */
+    public void shutdown() {
+        running = false;
+        thread.interrupt();
+    }
+
+    private void run() {
+        List<ActiveMute> expired = new ArrayList<>();
+        while (running) {
+            try {
+                expired.add(mutes.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            synchronized (this) {
+                mutes.drainTo(expired);
+                // A load between taking the first mute and getting here can queue it again, and as it expired already
+                // the copy is drained with it
+                expired.removeIf(mute -> !lifting.add(mute.getTicket()));
+            }
+            lift(new ArrayList<>(expired));
+            expired.clear();
+        }
+    }
+
+    private void lift(List<ActiveMute> expired) {
+        Flux.fromIterable(expired)
+                // A user muted again with the same role keeps the role until the last mute expires
+                .filter(mute -> mutes.stream().noneMatch(other -> other.getId() == mute.getId() && other.getType() == mute.getType()))
+                .flatMap(mute -> clientManager.getClient().getMemberById(clientManager.GUILD_SNOWFLAKE, Snowflake.of(mute.getId()))
+                        .flatMap(member -> member.removeRole(Snowflake.of(mute.getType()), "The mute expired"))
+                        .onErrorResume(e -> {
+                            Dizcord.getInstance().getLogger().log(Level.WARNING, "Could not unmute " + Long.toUnsignedString(mute.getId()), e);
+                            return Mono.empty();
+                        }))
+                .then(sql.deleteMutes(expired))
+                .doFinally(signal -> {
+                    synchronized (this) {
+                        for (ActiveMute mute : expired) {
+                            lifting.remove(mute.getTicket());
+                        }
+                    }
+                })
+                .subscribe();
+    }
+}
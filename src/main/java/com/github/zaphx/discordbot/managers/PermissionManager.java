@@ -0,0 +1,119 @@
+package com.github.zaphx.discordbot.managers;
+
+import discord4j.core.object.entity.Guild;
+import discord4j.core.object.entity.Member;
+import discord4j.core.object.util.Permission;
+import discord4j.core.object.util.PermissionSet;
+import discord4j.core.object.util.Snowflake;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Works out the base permissions of members from the roles kept by the {@link RolesManager}, so checking a permission
+ * is a few lookups and a bitmask test instead of a request. As the roles are kept up to date by the role events,
+ * nothing has to be forgotten when a role changes. The roles of the bot itself and the owner of the guild are loaded
+ * on ready and kept up to date by the member and guild events.
+ */
+public class PermissionManager {
+
+    private static final long ALL = PermissionSet.all().getRawValue();
+
+    private static PermissionManager instance;
+    private DiscordClientManager clientManager = DiscordClientManager.getInstance();
+    private RolesManager rolesManager = RolesManager.getInstance();
+    private volatile long owner;
+    private volatile Set<Snowflake> selfRoles = Collections.emptySet();
+
+    private PermissionManager() {
+    }
+
+    /**
+     * Gets the instance of the PermissionManager
+     *
+     * @return A new instance if one does not exist, else the instance
+     */
+    public static PermissionManager getInstance() {
+        return instance == null ? instance = new PermissionManager() : instance;
+    }
+
+    /**
+     * Checks if a member has a permission. This never blocks.
+     *
+     * @param member     The member to check
+     * @param permission The permission to check for
+     * @return True if the member has the permission, else false
+     */
+    public boolean hasPermission(Member member, Permission permission) {
+        return (getPermissions(member.getId().asLong(), member.getRoleIds()) & permission.getValue()) != 0;
+    }
+
+    /**
+     * Checks if the bot has a permission. This never blocks, so the bot only has the permissions of everyone until its
+     * roles have been loaded.
+     *
+     * @param permission The permission to check for
+     * @return True if the bot has the permission, else false
+     */
+    public boolean clientHasPermission(Permission permission) {
+        long self = clientManager.getClient().getSelfId().map(Snowflake::asLong).orElse(0L);
+        return (getPermissions(self, selfRoles) & permission.getValue()) != 0;
+    }
+
+    /**
+     * Loads the owner of the guild and the roles of the bot
+     *
+     * @return A Mono completing once both are in use
+     */
+    public Mono<Void> load() {
+        Mono<Void> guild = clientManager.getClient().getGuildById(clientManager.GUILD_SNOWFLAKE)
+                .doOnNext(this::updateGuild)
+                .then();
+        Optional<Snowflake> selfId = clientManager.getClient().getSelfId();
+        if (!selfId.isPresent()) {
+            return guild;
+        }
+        return guild.and(clientManager.getClient().getMemberById(clientManager.GUILD_SNOWFLAKE, selfId.get())
+                .doOnNext(member -> selfRoles = member.getRoleIds()));
+    }
+
+    /**
+     * Takes note of the new roles of a member, if the member is the bot
+     *
+     * @param memberId The Id of the member
+     * @param roles    The Ids of the roles the member has now
+     */
+    public void updateMember(long memberId, Set<Snowflake> roles) {
+        if (clientManager.getClient().getSelfId().map(id -> id.asLong() == memberId).orElse(false)) {
+            selfRoles = roles;
+        }
+    }
+
+    /**
+     * Takes note of the owner of the guild, as the owner has every permission
+     *
+     * @param guild The guild as it is now
+     */
+    public void updateGuild(Guild guild) {
+        owner = guild.getOwnerId().asLong();
+    }
+
+    private long getPermissions(long memberId, Set<Snowflake> roleIds) {
+        if (memberId != 0 && memberId == owner) {
+            return ALL;
+        }
+        // The everyone role has the same Id as the guild
+        long permissions = permissionsOf(clientManager.GUILD_Id);
+        for (Snowflake roleId : roleIds) {
+            permissions |= permissionsOf(roleId.asLong());
+        }
+        return (permissions & Permission.ADMINISTRATOR.getValue()) != 0 ? ALL : permissions;
+    }
+
+    private long permissionsOf(long roleId) {
+        RoleSnapshot role = rolesManager.getRole(roleId);
+        return role == null ? 0 : role.getPermissions();
+    }
+}
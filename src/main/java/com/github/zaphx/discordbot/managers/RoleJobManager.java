@@ -0,0 +1,306 @@
+package com.github.zaphx.discordbot.managers;
+
+import com.github.zaphx.discordbot.Dizcord;
+import com.github.zaphx.discordbot.sql.RoleJob;
+import discord4j.core.object.entity.Guild;
+import discord4j.core.object.entity.Member;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.Role;
+import discord4j.core.object.util.Snowflake;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import org.bukkit.configuration.file.FileConfiguration;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.UnicastProcessor;
+import reactor.util.function.Tuples;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Adds and removes roles in bulk without flooding Discord. Every role change goes through a pipeline with a bounded
+ * amount of requests in flight, so Discord's rate limit on the route is waited out instead of run into. Members that
+ * already have the role, or already lack it, are skipped using the roles the client has cached for them.
+ * <p>
+ * Changing a role for every member is a job. Jobs run one at a time, handle members in order of their Id and record
+ * how far they have come in the database, so a job that was interrupted carries on where it stopped on the next start.
+ * What is recorded never goes past a member whose role could not be changed, so that member is tried again then.
+ * Progress is reported in the channel the job was started from.
+ */
+public class RoleJobManager {
+
+    /**
+     * How many members are handled between recording the progress of a job
+     */
+    private static final int CHECKPOINT_INTERVAL = 50;
+    /**
+     * How often the progress message of a job is updated, in milliseconds
+     */
+    private static final long REPORT_INTERVAL = 15000;
+
+    private static RoleJobManager instance;
+    private final DiscordClientManager clientManager = DiscordClientManager.getInstance();
+    private final ChannelManager channelManager = ChannelManager.getInstance();
+    private final SQLManager sql = SQLManager.getInstance();
+    private FileConfiguration config = Dizcord.getInstance().getConfig();
+    private final int concurrency = config.getInt("discord.role-jobs.concurrency", 2);
+    private final FluxSink<RoleJob> jobs;
+    private final FluxSink<Change> changes;
+    private final Disposable jobWorker;
+    private final Disposable changeWorker;
+    /**
+     * The Ids of jobs that are queued or running, so a job loaded again on reconnect does not run twice
+     */
+    private final TLongSet active = new TLongHashSet();
+
+    private RoleJobManager() {
+        UnicastProcessor<RoleJob> jobQueue = UnicastProcessor.create();
+        jobs = jobQueue.sink();
+        jobWorker = jobQueue.concatMap(this::run).subscribe();
+        // Single changes do not wait behind a running job, but still have their own bound
+        UnicastProcessor<Change> changeQueue = UnicastProcessor.create();
+        changes = changeQueue.sink();
+        changeWorker = changeQueue.flatMap(change -> apply(change.member, change.role, change.add), concurrency).subscribe();
+    }
+
+    /**
+     * Gets the instance of the RoleJobManager
+     *
+     * @return A new instance if one does not exist, else the instance
+     */
+    public static RoleJobManager getInstance() {
+        return instance == null ? instance = new RoleJobManager() : instance;
+    }
+
+    /**
+     * Starts adding a role to, or removing it from, every member of the guild
+     *
+     * @param role    The Id of the role
+     * @param add     True to add the role, false to remove it
+     * @param channel The Id of the channel to report progress to
+     * @return A Mono emitting the Id of the job once it is queued, or an empty Mono if it could not be recorded
+     */
+    public Mono<Long> start(long role, boolean add, long channel) {
+        return sql.insertRoleJob(role, add, channel).doOnNext(id -> submit(new RoleJob(id, role, add, channel, 0, 0)));
+    }
+
+    /**
+     * Loads every job that has not finished from the database and carries on with them
+     *
+     * @return A Mono emitting the amount of jobs that were resumed
+     */
+    public Mono<Integer> load() {
+        return sql.getRoleJobs().map(loaded -> {
+            int resumed = 0;
+            for (RoleJob job : loaded) {
+                if (submit(job)) {
+                    resumed++;
+                }
+            }
+            return resumed;
+        });
+    }
+
+    /**
+     * Adds roles to, or removes them from, a single member
+     *
+     * @param memberId The Id of the member
+     * @param roles    The Ids of the roles
+     * @param add      True to add the roles, false to remove them
+     */
+    public void change(long memberId, List<Snowflake> roles, boolean add) {
+        if (roles.isEmpty()) {
+            return;
+        }
+        // The member is fetched once for all of the roles
+        clientManager.getClient().getMemberById(clientManager.GUILD_SNOWFLAKE, Snowflake.of(memberId)).subscribe(member -> {
+            for (Snowflake role : roles) {
+                changes.next(new Change(member, role, add));
+            }
+        });
+    }
+
+    /**
+     * Stops every job. Jobs that have not finished stay in the database and are resumed on the next start.
+     */
+    public void shutdown() {
+        jobWorker.dispose();
+        changeWorker.dispose();
+    }
+
+    private boolean submit(RoleJob job) {
+        synchronized (active) {
+            if (!active.add(job.getId())) {
+                return false;
+            }
+        }
+        jobs.next(job);
+        return true;
+    }
+
+    private Mono<Void> run(RoleJob job) {
+        Snowflake role = Snowflake.of(job.getRole());
+        Mono<String> roleName = clientManager.getClient().getRoleById(clientManager.GUILD_SNOWFLAKE, role)
+                .map(Role::getName)
+                .defaultIfEmpty(role.asString())
+                .cache();
+        return clientManager.getClient().getGuildById(clientManager.GUILD_SNOWFLAKE)
+                .flatMapMany(Guild::getMembers)
+                .filter(member -> member.getId().asLong() > job.getLastMember())
+                .collectSortedList(Comparator.comparingLong(member -> member.getId().asLong()))
+                .zipWith(roleName)
+                .flatMap(tuple -> {
+                    Progress progress = new Progress(job, tuple.getT2(), tuple.getT1().size());
+                    Mono<Message> report = channelManager.resolveChannel(Snowflake.of(job.getChannel()))
+                            .flatMap(channel -> channel.createMessage(progress.describe()))
+                            .cache();
+                    return report.then(Flux.fromIterable(tuple.getT1())
+                            // Members are handled in order, so everything up to the last member handled is done
+                            .flatMapSequential(member -> apply(member, role, job.isAdd()).map(outcome -> Tuples.of(member, outcome)), concurrency)
+                            .concatMap(result -> {
+                                progress.handled(result.getT1().getId().asLong(), result.getT2());
+                                return progress.checkpoint(report);
+                            })
+                            .then(sql.deleteRoleJob(job.getId()))
+                            .then(Mono.defer(() -> progress.finish(report))));
+                })
+                .onErrorResume(e -> {
+                    System.err.print("An error occurred while running role job " + job.getId() + ". See stacktrace below for more information.");
+                    e.printStackTrace();
+                    return Mono.empty();
+                })
+                .doFinally(signal -> {
+                    synchronized (active) {
+                        active.remove(job.getId());
+                    }
+                });
+    }
+
+    /**
+     * Adds or removes a role, unless the member already has it or already lacks it
+     *
+     * @return A Mono emitting whether the role was changed, skipped or could not be changed
+     */
+    private Mono<Outcome> apply(Member member, Snowflake role, boolean add) {
+        if (member.getRoleIds().contains(role) == add) {
+            return Mono.just(Outcome.SKIPPED);
+        }
+        return (add ? member.addRole(role) : member.removeRole(role))
+                .thenReturn(Outcome.CHANGED)
+                .onErrorResume(e -> {
+                    Dizcord.getInstance().getLogger().log(Level.WARNING, "Could not " + (add ? "add" : "remove") + " role " + role.asString()
+                            + " for member " + member.getId().asString() + ": " + e.getMessage());
+                    return Mono.just(Outcome.FAILED);
+                });
+    }
+
+    private enum Outcome {
+        CHANGED, SKIPPED, FAILED
+    }
+
+    private static class Change {
+
+        private final Member member;
+        private final Snowflake role;
+        private final boolean add;
+
+        private Change(Member member, Snowflake role, boolean add) {
+            this.member = member;
+            this.role = role;
+            this.add = add;
+        }
+    }
+
+    /**
+     * The progress of a running job. Only used from the job's own pipeline, one member at a time
+     */
+    private class Progress {
+
+        private final RoleJob job;
+        private final String roleName;
+        private final int total;
+        private final long started = System.nanoTime();
+        private int done;
+        private int handled;
+        private int changed;
+        private int failed;
+        /**
+         * The last member handled before the first failure, and how many members were done by then. This is what gets
+         * recorded, so an interrupted job tries the failed members again
+         */
+        private long lastMember;
+        private int doneBeforeFailure;
+        private long lastReport = System.currentTimeMillis();
+
+        private Progress(RoleJob job, String roleName, int remaining) {
+            this.job = job;
+            this.roleName = roleName;
+            this.done = job.getDone();
+            this.total = job.getDone() + remaining;
+            this.lastMember = job.getLastMember();
+            this.doneBeforeFailure = job.getDone();
+        }
+
+        private void handled(long member, Outcome outcome) {
+            done++;
+            handled++;
+            if (outcome == Outcome.CHANGED) {
+                changed++;
+            } else if (outcome == Outcome.FAILED) {
+                failed++;
+            }
+            if (failed == 0) {
+                lastMember = member;
+                doneBeforeFailure = done;
+            }
+        }
+
+        private Mono<Void> checkpoint(Mono<Message> report) {
+            Mono<Void> work = Mono.empty();
+            if (handled % CHECKPOINT_INTERVAL == 0) {
+                work = sql.updateRoleJob(job.getId(), lastMember, doneBeforeFailure);
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= REPORT_INTERVAL) {
+                lastReport = now;
+                String text = describe();
+                report.flatMap(message -> message.edit(spec -> spec.setContent(text))).subscribe();
+            }
+            return work;
+        }
+
+        private Mono<Void> finish(Mono<Message> report) {
+            String text = "Finished " + (job.isAdd() ? "adding" : "removing") + " the role **" + roleName + "** " + (job.isAdd() ? "to" : "from")
+                    + " every member in " + formatDuration(System.nanoTime() - started) + ". " + changed + " member(s) were changed, "
+                    + (handled - changed - failed) + " were skipped and " + failed + " could not be changed.";
+            return report.flatMap(message -> message.edit(spec -> spec.setContent(text))).then();
+        }
+
+        private String describe() {
+            StringBuilder builder = new StringBuilder(job.isAdd() ? "Adding" : "Removing")
+                    .append(" the role **").append(roleName).append("** ").append(job.isAdd() ? "to" : "from")
+                    .append(" every member: ").append(done).append('/').append(total);
+            if (total > 0) {
+                builder.append(" (").append(done * 100 / total).append("%)");
+            }
+            if (failed > 0) {
+                builder.append(", ").append(failed).append(" could not be changed");
+            }
+            if (handled > 0) {
+                long remaining = (System.nanoTime() - started) / handled * (total - done);
+                builder.append(", about ").append(formatDuration(remaining)).append(" left");
+            }
+            return builder.toString();
+        }
+
+        private String formatDuration(long nanos) {
+            long seconds = TimeUnit.NANOSECONDS.toSeconds(nanos);
+            return seconds < 60 ? seconds + " second(s)" : TimeUnit.SECONDS.toMinutes(seconds) + " minute(s)";
+        }
+    }
+}
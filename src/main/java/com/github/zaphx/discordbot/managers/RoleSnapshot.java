@@ -0,0 +1,75 @@
+package com.github.zaphx.discordbot.managers;
+
+import discord4j.core.object.entity.Role;
+import discord4j.core.object.util.Permission;
+import discord4j.core.object.util.Snowflake;
+
+/**
+ * A role of the guild as it was when it was last created or updated. Unlike {@link Role}, nothing here ever makes a
+ * request.
+ */
+public final class RoleSnapshot {
+
+    private final Snowflake id;
+    private final String name;
+    private final long permissions;
+    private final int position;
+    private final boolean mentionable;
+
+    private RoleSnapshot(Snowflake id, String name, long permissions, int position, boolean mentionable) {
+        this.id = id;
+        this.name = name;
+        this.permissions = permissions;
+        this.position = position;
+        this.mentionable = mentionable;
+    }
+
+    /**
+     * @param role The role to take a snapshot of
+     * @return The snapshot of the role
+     */
+    public static RoleSnapshot of(Role role) {
+        return new RoleSnapshot(role.getId(), role.getName(), role.getPermissions().getRawValue(), role.getRawPosition(), role.isMentionable());
+    }
+
+    public Snowflake getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The raw permissions of the role
+     */
+    public long getPermissions() {
+        return permissions;
+    }
+
+    /**
+     * @param permission The permission to check for
+     * @return True if the role grants the permission, else false
+     */
+    public boolean hasPermission(Permission permission) {
+        return (permissions & permission.getValue()) != 0;
+    }
+
+    /**
+     * @return The position of the role as Discord sent it. Roles with the same position are ordered by their Id
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    public boolean isMentionable() {
+        return mentionable;
+    }
+
+    /**
+     * @return The mention of the role
+     */
+    public String getMention() {
+        return "<@&" + id.asString() + ">";
+    }
+}
@@ -2,17 +2,39 @@ package com.github.zaphx.discordbot.managers;
 
 import com.github.zaphx.discordbot.Dizcord;
 import discord4j.core.DiscordClient;
+import discord4j.core.event.domain.role.RoleUpdateEvent;
 import discord4j.core.object.entity.Guild;
 import discord4j.core.object.entity.Role;
 import discord4j.core.object.util.Snowflake;
-import gnu.trove.map.TMap;
-import gnu.trove.map.hash.THashMap;
+import discord4j.core.spec.RoleEditSpec;
 import org.bukkit.configuration.file.FileConfiguration;
+import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a snapshot of every role of the guild, by Id and by name. The roles are loaded on ready and kept up to date by
+ * the role events, so looking a role up never makes a request.
+ */
 public class RolesManager {
 
     private static RolesManager instance;
-    private TMap<String, Snowflake> roles = new THashMap<>();
+    /**
+     * The roles in use. Loading the roles again builds a new index and swaps it in, so lookups never see it half full
+     */
+    private volatile Index index = new Index();
+    /**
+     * Changes from role events made while the roles are being loaded, as the loaded roles may not have them yet. They
+     * are applied to the new index before it is swapped in. Null while no load is running
+     */
+    private List<Consumer<Index>> pending;
+    private int loads;
     private Dizcord dizcord = Dizcord.getInstance();
     private FileConfiguration config = dizcord.getConfig();
     private DiscordClientManager clientManager = DiscordClientManager.getInstance();
@@ -25,28 +47,153 @@ public class RolesManager {
         return instance == null ? instance = new RolesManager() : instance;
     }
 
-    public void mapRoles() {
-        Guild guild = client.getGuildById(clientManager.GUILD_SNOWFLAKE).block();
-        roles.clear();
-        for (Role role : guild.getRoles().collectList().block()) {
-            roles.put(role.getName(), role.getId());
-        }
+    /**
+     * Loads every role of the guild, replacing the roles that were loaded before once they are all loaded
+     *
+     * @return A Mono emitting the amount of roles loaded
+     */
+    public Mono<Integer> mapRoles() {
+        return Mono.defer(() -> {
+            synchronized (this) {
+                if (loads++ == 0) {
+                    pending = new ArrayList<>();
+                }
+            }
+            return client.getGuildById(clientManager.GUILD_SNOWFLAKE)
+                    .flatMapMany(Guild::getRoles)
+                    .collectList()
+                    .map(list -> {
+                        Index loaded = new Index();
+                        list.forEach(role -> loaded.add(RoleSnapshot.of(role)));
+                        synchronized (this) {
+                            pending.forEach(change -> change.accept(loaded));
+                            index = loaded;
+                        }
+                        return list.size();
+                    })
+                    .doFinally(signal -> {
+                        synchronized (this) {
+                            if (--loads == 0) {
+                                pending = null;
+                            }
+                        }
+                    });
+        });
     }
 
+    /**
+     * Gets the Id of a role by its name
+     *
+     * @param name The name of the role
+     * @return The Id of the role, or null if there is no role with that name
+     */
     public Snowflake getRole(String name) {
-        return client.getRoleById(clientManager.GUILD_SNOWFLAKE, roles.get(name)).block().getId();
+        RoleSnapshot role = index.names.get(name);
+        return role == null ? null : role.getId();
+    }
+
+    /**
+     * Gets a role by its Id
+     *
+     * @param Id The Id of the role
+     * @return The role, or null if there is no role with that Id
+     */
+    public RoleSnapshot getRole(long Id) {
+        return index.roles.get(Id);
+    }
+
+    /**
+     * Gets a role by its name
+     *
+     * @param name The name of the role
+     * @return The role, or null if there is no role with that name
+     */
+    public RoleSnapshot getRoleByName(String name) {
+        return index.names.get(name);
+    }
+
+    /**
+     * @return Every role of the guild
+     */
+    public Collection<RoleSnapshot> getRoles() {
+        return Collections.unmodifiableCollection(index.roles.values());
     }
 
-    public Role getRole(long Id) {
-        return client.getRoleById(clientManager.GUILD_SNOWFLAKE, Snowflake.of(Id)).block();
+    /**
+     * Edits a role straight away, without fetching it first
+     *
+     * @param Id   The Id of the role
+     * @param spec The changes to make
+     * @return A Mono completing once the role has been edited
+     */
+    public Mono<Void> editRole(Snowflake Id, Consumer<RoleEditSpec> spec) {
+        RoleEditSpec edit = new RoleEditSpec();
+        spec.accept(edit);
+        return clientManager.getServiceMediator().getRestClient().getGuildService()
+                .modifyGuildRole(clientManager.GUILD_Id, Id.asLong(), edit.asRequest(), null)
+                .then();
     }
 
     public void addRole(Role role) {
-        roles.put(role.getName(),role.getId());
+        RoleSnapshot snapshot = RoleSnapshot.of(role);
+        change(current -> current.add(snapshot));
+    }
+
+    /**
+     * Replaces a role with its new version. The old version comes from the roles loaded here, as the event only has it
+     * if the client had it cached.
+     *
+     * @param event The event of the update
+     */
+    public void updateRole(RoleUpdateEvent event) {
+        RoleSnapshot snapshot = RoleSnapshot.of(event.getCurrent());
+        change(current -> {
+            current.remove(snapshot.getId().asLong());
+            current.add(snapshot);
+        });
     }
 
-    public void removeRole(Role role) {
-        roles.remove(role.getName());
+    public void removeRole(long Id) {
+        change(current -> current.remove(Id));
     }
 
+    /**
+     * Applies a change to the roles in use, and to the roles being loaded if there are any
+     */
+    private synchronized void change(Consumer<Index> change) {
+        change.accept(index);
+        if (pending != null) {
+            pending.add(change);
+        }
+    }
+
+    private static class Index {
+
+        /**
+         * Every role of the guild by its Id
+         */
+        private final ConcurrentMap<Long, RoleSnapshot> roles = new ConcurrentHashMap<>();
+        /**
+         * Every role of the guild by its name. When roles share a name, the last one created or updated is kept
+         */
+        private final ConcurrentMap<String, RoleSnapshot> names = new ConcurrentHashMap<>();
+
+        private void add(RoleSnapshot role) {
+            roles.put(role.getId().asLong(), role);
+            names.put(role.getName(), role);
+        }
+
+        private void remove(long Id) {
+            RoleSnapshot removed = roles.remove(Id);
+            if (removed != null && names.remove(removed.getName(), removed)) {
+                // Another role with the same name takes its place
+                for (RoleSnapshot role : roles.values()) {
+                    if (role.getName().equals(removed.getName())) {
+                        names.put(role.getName(), role);
+                        break;
+                    }
+                }
+            }
+        }
+    }
 }
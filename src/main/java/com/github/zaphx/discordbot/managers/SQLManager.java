@@ -1,28 +1,35 @@
 package com.github.zaphx.discordbot.managers;
 
 import com.github.zaphx.discordbot.Dizcord;
-import com.github.zaphx.discordbot.utilities.ArgumentException;
-import discord4j.core.object.entity.Member;
-import discord4j.core.object.entity.Message;
-import discord4j.core.object.entity.TextChannel;
+import com.github.zaphx.discordbot.sql.ActiveMute;
+import com.github.zaphx.discordbot.sql.ArchivedMessage;
+import com.github.zaphx.discordbot.sql.ConnectionCallback;
+import com.github.zaphx.discordbot.sql.ConnectionPool;
+import com.github.zaphx.discordbot.sql.MessageArchiver;
+import com.github.zaphx.discordbot.sql.RoleJob;
+import com.github.zaphx.discordbot.sql.SQLStatement;
+import com.github.zaphx.discordbot.sql.SchemaMigrator;
+import com.github.zaphx.discordbot.sql.StatementBinder;
 import discord4j.core.object.entity.User;
-import discord4j.core.object.util.Snowflake;
+import gnu.trove.map.TLongLongMap;
 import gnu.trove.map.hash.THashMap;
+import gnu.trove.map.hash.TLongLongHashMap;
 import org.bukkit.configuration.file.FileConfiguration;
-import org.intellij.lang.annotations.Language;
 import org.jetbrains.annotations.NotNull;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.sql.*;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SQLManager {
 
-    private DiscordClientManager clientManager = DiscordClientManager.getInstance();
-
     private FileConfiguration config = Dizcord.getInstance().getConfig();
     private static SQLManager instance;
     public final String prefix = config.getString("sql.prefix");
@@ -32,9 +39,63 @@ public class SQLManager {
     private final String PASSWORD = config.getString("sql.password");
     private final String HOST = config.getString("sql.host");
     private final String DATABASE = config.getString("sql.database");
+    private final String DRIVER = "com.mysql.jdbc.Driver";
+
+    private final ConnectionPool pool;
+    private final MessageArchiver archiver;
+    private final ExecutorService executor;
+    /**
+     * Runs every blocking JDBC call. It has one thread less than the pool has connections, leaving a connection for the
+     * archiver thread. Threads can still wait for a connection while a full archiver queue makes callers write messages
+     * themselves.
+     */
+    private final Scheduler scheduler;
+    private final Map<SQLStatement, String> statements = new EnumMap<>(SQLStatement.class);
 
     // Not public constructor
     private SQLManager() {
+        try {
+            // Check if driver exists
+            Class.forName(DRIVER);
+        } catch (ClassNotFoundException e) {
+            System.err.print("The MySQL driver could not be found. See stacktrace below for more information.");
+            e.printStackTrace();
+        }
+        // rewriteBatchedStatements lets the driver send a batch of inserts as a single multi-row insert.
+        // Statements are prepared on the server and cached per connection, so each one is only parsed once
+        String url = String.format("jdbc:mysql://%s:%d/%s?useSSL=false&rewriteBatchedStatements=true" +
+                "&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=64&prepStmtCacheSqlLimit=2048", HOST, PORT, DATABASE);
+        for (SQLStatement statement : SQLStatement.values()) {
+            statements.put(statement, statement.getSql(prefix));
+        }
+        // Sizes are in connections, times are in seconds
+        pool = new ConnectionPool(url, USERNAME, PASSWORD,
+                config.getInt("sql.pool.min-size", 2),
+                config.getInt("sql.pool.max-size", 10),
+                config.getLong("sql.pool.connection-timeout", 30) * 1000L,
+                config.getLong("sql.pool.idle-timeout", 600) * 1000L,
+                config.getInt("sql.pool.validation-timeout", 5),
+                config.getLong("sql.pool.leak-detection-threshold", 60) * 1000L,
+                Dizcord.getInstance().getLogger());
+        // Times are in milliseconds
+        archiver = new MessageArchiver(this::archiveMessages, this::removeMessages,
+                config.getInt("sql.archive.queue-capacity", 10000),
+                config.getInt("sql.archive.batch-size", 100),
+                config.getLong("sql.archive.flush-interval", 1000),
+                config.getLong("sql.archive.offer-timeout", 50),
+                Dizcord.getInstance().getLogger());
+        archiver.start();
+        // One connection is left for the archiver thread
+        int threads = Math.max(1, config.getInt("sql.pool.max-size", 10) - 1);
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor jdbc = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "Dizcord-SQL-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        jdbc.allowCoreThreadTimeOut(true);
+        executor = jdbc;
+        scheduler = Schedulers.fromExecutorService(executor);
     }
 
     /**
@@ -47,390 +108,509 @@ public class SQLManager {
     }
 
     /**
-     * Gets an SQL connection to the SQL server of the spigot server
+     * Borrows an SQL connection to the SQL server of the spigot server from the connection pool.
+     * The connection must be closed to return it to the pool.
      *
      * @return The connection to the SQL server the server uses
+     * @throws SQLException If no connection could be obtained
      */
     @NotNull
-    private Connection getConnection() {
-        String driver = "com.mysql.jdbc.Driver";
-        String url = String.format("jdbc:mysql://%s:%d/%s", HOST, PORT, DATABASE);
+    private Connection getConnection() throws SQLException {
+        return pool.getConnection();
+    }
 
+    /**
+     * Writes every queued message to the database, waits for running statements and closes the connection pool. Should only be called when the plugin is disabled.
+     */
+    public void shutdown() {
+        long timeout = config.getLong("sql.archive.shutdown-timeout", 10) * 1000L;
+        archiver.shutdown(timeout);
+        executor.shutdown();
         try {
-            // Check if driver exists
-            Class.forName(driver);
-            return DriverManager.getConnection(url + "?useSSL=false", USERNAME, PASSWORD);
-        } catch (ClassNotFoundException | SQLException e) {
-            System.err.print("An error occurred while establishing connection to the SQL server. See stacktrace below for more information.");
-            e.printStackTrace();
+            if (!executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                Dizcord.getInstance().getLogger().warning("Some SQL statements did not finish before the plugin was disabled");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        // Should never happen
-        return null;
+        pool.shutdown();
     }
 
     /**
-     * Checks if a table exits
+     * Runs work with a borrowed connection on the JDBC scheduler. Errors are printed and complete the result empty,
+     * so a failing query never reaches the gateway threads.
      *
-     * @param tableName The table to look for
-     * @return True if the table exists, else false
-     */
-    private boolean tableExist(String tableName) {
-        Connection connection = getConnection();
-        boolean tExists = false;
-        try (ResultSet rs = connection.getMetaData().getTables(null, null, tableName, null)) {
-            while (rs.next()) {
-                String tName = rs.getString("TABLE_NAME");
-                if (tName != null && tName.equals(config.getString("sql.prefix") + tableName)) {
-                    tExists = true;
-                    break;
-                }
-            }
-            connection.close();
-        } catch (SQLException e) {
-            System.err.print("An error occurred while checking if a table exists in your database. See stacktrace below for more information.");
+     * @param description What the work does, used when reporting errors
+     * @param callback    The work to do
+     * @param <T>         The type of the result
+     * @return The result of the work, or an empty Mono if there is none or an error occurred
+     */
+    private <T> Mono<T> withConnection(String description, ConnectionCallback<T> callback) {
+        return onConnection(callback).onErrorResume(e -> {
+            System.err.print("An error occurred while " + description + ". See stacktrace below for more information.");
             e.printStackTrace();
-        }
-        // Close connection to prevent too many open connections
-        return tExists;
+            return Mono.empty();
+        });
     }
 
     /**
-     * Executes an SQL statement
+     * Runs work with a borrowed connection on the JDBC scheduler. Unlike {@link #withConnection(String, ConnectionCallback)},
+     * errors are passed on, for callers that must not mistake a failed query for an empty result.
      *
-     * @param sql
-     * @param parameters
+     * @param callback The work to do
+     * @param <T>      The type of the result
+     * @return The result of the work, or an error if the work failed
      */
-    public void executeStatementAndPost(@Language("sql") String sql, Object... parameters) {
+    private <T> Mono<T> onConnection(ConnectionCallback<T> callback) {
+        return Mono.fromCallable(() -> {
+            try (Connection connection = getConnection()) {
+                return callback.doInConnection(connection);
+            }
+        }).subscribeOn(scheduler);
+    }
 
-        Future<Void> future = CompletableFuture.supplyAsync(() -> {
-            try {
-                Connection connection = getConnection();
-                PreparedStatement ps = connection.prepareCall(String.format(sql, parameters));
-                ps.execute();
-                connection.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
+    /**
+     * Creates the tables and indexes the plugin needs, by applying every migration the database has not seen yet.
+     * Unlike other queries, a failed migration is not swallowed, as nothing else can work without the schema.
+     *
+     * @return A Mono completing once the schema is up to date, or erroring if it could not be brought up to date
+     */
+    public Mono<Void> migrate() {
+        return onConnection(connection -> {
+            new SchemaMigrator(prefix, Dizcord.getInstance().getLogger()).migrate(connection);
+            return true;
+        }).then();
+    }
+
+    /**
+     * Prepares a statement from the registry. The driver hands out a cached statement if the connection has prepared it before.
+     *
+     * @param connection The connection to prepare the statement on
+     * @param statement  The statement to prepare
+     * @return The prepared statement
+     * @throws SQLException If the statement could not be prepared
+     */
+    private PreparedStatement prepare(Connection connection, SQLStatement statement) throws SQLException {
+        return connection.prepareStatement(statements.get(statement));
+    }
+
+    /**
+     * Executes a statement from the registry on the JDBC scheduler
+     *
+     * @param statement The statement to execute
+     * @param binder    Binds the parameters of the statement
+     * @return A Mono completing once the statement has been executed
+     */
+    private Mono<Void> update(SQLStatement statement, StatementBinder binder) {
+        return withConnection("executing " + statement, connection -> {
+            try (PreparedStatement ps = prepare(connection, statement)) {
+                binder.bind(ps);
+                ps.executeUpdate();
             }
             return null;
         });
-        // always replace this -> ¼
-        try {
-            future.get();
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-        }
     }
 
     /**
-     * Count the entries in a table
+     * Executes an insert from the registry on the JDBC scheduler
      *
-     * @param table The table to look in
-     * @return The amount of entries in the table
-     */
-    long countTickets(String table) {
-        Future<Long> future = CompletableFuture.supplyAsync(() -> {
-            try {
-                Connection connection = getConnection();
-                PreparedStatement ps = connection.prepareCall("SELECT COUNT(ticket) AS size FROM " + prefix + table);
-                List<Long> list = new ArrayList<>();
-                ResultSet set = ps.executeQuery();
-                while (set.next()) {
-                    list.add(set.getLong("size"));
+     * @param statement The statement to execute
+     * @param binder    Binds the parameters of the statement
+     * @return The key generated by the database
+     */
+    private Mono<Long> insert(SQLStatement statement, StatementBinder binder) {
+        return withConnection("executing " + statement, connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(statements.get(statement), Statement.RETURN_GENERATED_KEYS)) {
+                binder.bind(ps);
+                ps.executeUpdate();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    return keys.next() ? keys.getLong(1) : null;
                 }
-                connection.close();
-                return list.get(0);
-            } catch (SQLException e) {
-                e.printStackTrace();
             }
-            return 0L;
         });
-
-        try {
-            return future.get();
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-        }
-        return 0L;
-
     }
 
     /**
-     * Create the warnings table if it does not exist
+     * Adds a mute to the database
+     *
+     * @param id      The Id of the muted user
+     * @param muter   The Id of the user that issued the mute
+     * @param expires When the mute expires, in milliseconds since the epoch
+     * @param type    The Id of the mute role
+     * @return The ticket of the mute
      */
-    public void createWarningsIfNotExists() {
-        Future<Boolean> future = CompletableFuture.supplyAsync(() -> {
-            if (!tableExist("warnings")) {
-                try {
-                    Connection connection = getConnection();
-                    connection.createStatement().execute("CREATE TABLE IF NOT EXISTS " + prefix + "warnings (\n" +
-                            "ticket INTEGER NOT NULL AUTO_INCREMENT PRIMARY KEY, \n" +
-                            "id BIGINT UNSIGNED NOT NULL,\n" +
-                            "reason VARCHAR(255) NOT NULL, \n" +
-                            "warnee BIGINT UNSIGNED NOT NULL" +
-                            ")");
-                    connection.close();
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
-            }
-            return true;
+    public Mono<Long> insertMute(long id, long muter, long expires, long type) {
+        return insert(SQLStatement.INSERT_MUTE, ps -> {
+            ps.setLong(1, id);
+            ps.setLong(2, muter);
+            ps.setLong(3, expires);
+            ps.setLong(4, type);
         });
-        try {
-            future.get();
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-        }
-
     }
 
     /**
-     * Create the warnings table if it does not exist
+     * Adds a warning to the database
+     *
+     * @param id     The Id of the warned user
+     * @param reason The reason for the warning
+     * @param warnee The Id of the user that issued the warning
+     * @return The ticket of the warning
      */
-    public void createMessagesIfNotExists() {
-        Future<Boolean> future = CompletableFuture.supplyAsync(() -> {
-            if (!tableExist("messages")) {
-                try {
-                    Connection connection = getConnection();
-                    connection.createStatement().execute("CREATE TABLE IF NOT EXISTS " + prefix + "messages (\n" +
-                            "id BIGINT UNSIGNED PRIMARY KEY NOT NULL,\n" +
-                            "content text, \n" +
-                            "author BIGINT UNSIGNED NOT NULL, \n" +
-                            "author_name VARCHAR(255) NOT NULL, \n" +
-                            "channel BIGINT UNSIGNED NOT NULL" +
-                            ")");
-                    connection.close();
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
-            }
-            return true;
+    public Mono<Long> insertWarning(long id, String reason, long warnee) {
+        return insert(SQLStatement.INSERT_WARNING, ps -> {
+            ps.setLong(1, id);
+            ps.setString(2, reason);
+            ps.setLong(3, warnee);
         });
-        try {
-            future.get();
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-        }
-
     }
 
     /**
-     * Creates a mute table if it does not exist
+     * Links a Discord account to a minecraft account
+     *
+     * @param player  The UUID of the player
+     * @param hash    The hash the link was confirmed with
+     * @param discord The Id of the Discord user
+     * @return A Mono completing once the link has been added, or erroring if it could not be added
      */
-    public void createMutesIfNotExists() {
-        Future<Boolean> future = CompletableFuture.supplyAsync(() -> {
-            Connection connection = getConnection();
-            if (!tableExist("mutes")) {
-                try {
-                    String prefix = config.getString("sql.prefix");
-                    connection.createStatement().execute("CREATE TABLE IF NOT EXISTS " + prefix + "mutes (\n" +
-                            "ticket INTEGER NOT NULL AUTO_INCREMENT PRIMARY KEY, \n" +
-                            "id BIGINT UNSIGNED NOT NULL, \n" +
-                            "time DATETIME NOT NULL DEFAULT NOW(), \n" +
-                            "muter BIGINT UNSIGNED NOT NULL, \n" +
-                            "expires BIGINT UNSIGNED NOT NULL, \n" +
-                            "type BIGINT UNSIGNED NOT NULL" +
-                            ")");
-                    connection.close();
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
+    public Mono<Void> insertLink(UUID player, int hash, long discord) {
+        return onConnection(connection -> {
+            try (PreparedStatement ps = prepare(connection, SQLStatement.INSERT_LINK)) {
+                ps.setString(1, player.toString());
+                ps.setInt(2, hash);
+                ps.setLong(3, discord);
+                ps.executeUpdate();
             }
             return true;
-        });
-        try {
-            future.get();
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-        }
+        }).then();
+    }
+
+    /**
+     * Removes the link of a Discord account
+     *
+     * @param discord The Id of the Discord user
+     * @return A Mono completing once the link has been removed
+     */
+    public Mono<Void> deleteLink(long discord) {
+        return update(SQLStatement.DELETE_LINK, ps -> ps.setLong(1, discord));
     }
 
     /**
-     * Creates a reminder table if it does not exist
+     * Gets every mute that has not been lifted yet
+     *
+     * @return The active mutes
      */
-    public void createAccountLinkIfNotExists() {
-        Future<Boolean> future = CompletableFuture.supplyAsync(() -> {
-            Connection connection = getConnection();
-            if (!tableExist("reminders")) {
-                try {
-                    connection.createStatement().execute("CREATE TABLE IF NOT EXISTS " + prefix + "links (\n" +
-                            "id VARCHAR(255) NOT NULL PRIMARY KEY, \n" +
-                            "hash BIGINT UNSIGNED NOT NULL, \n" +
-                            "time DATETIME NOT NULL DEFAULT NOW(), \n" +
-                            "discord BIGINT NOT NULL" +
-                            ")");
-                    connection.close();
-                } catch (SQLException e) {
-                    e.printStackTrace();
+    public Mono<List<ActiveMute>> getMutes() {
+        return withConnection("loading the active mutes", connection -> {
+            List<ActiveMute> mutes = new ArrayList<>();
+            try (PreparedStatement ps = prepare(connection, SQLStatement.SELECT_MUTES);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    mutes.add(new ActiveMute(rs.getLong("ticket"), rs.getLong("id"), rs.getLong("type"), rs.getLong("expires")));
                 }
             }
-            return true;
+            return mutes;
         });
-        try {
-            future.get();
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-        }
     }
 
     /**
-     * Removes a user from the mute table when unmuted.
+     * Removes lifted mutes from the database as a single batch
+     *
+     * @param mutes The mutes to remove
+     * @return A Mono completing once the mutes have been removed
      */
-    public void unmute() {
-        Connection connection = getConnection();
-        Future<Void> future = CompletableFuture.supplyAsync(() -> {
-            try {
-                PreparedStatement preparedStatement = connection.prepareStatement("SELECT * FROM " + prefix + "mutes WHERE expires < UNIX_TIMESTAMP()");
-                ResultSet rs = preparedStatement.executeQuery();
-                while (rs.next()) {
-                    clientManager.getClient().getMemberById(Snowflake.of(clientManager.GUILD_Id), Snowflake.of(rs.getLong("id"))).doOnNext(member -> {
-                        try {
-                            member.removeRole(Snowflake.of(rs.getLong("type")));
-                        } catch (SQLException e) {
-                            e.printStackTrace();
-                        }
-                    }); // removeRole(clientManager.getClient().getRoleById(rs.getLong("type")));
-                    executeStatementAndPost("DELETE FROM %smutes WHERE id = %s", prefix, rs.getLong("id"));
+    public Mono<Void> deleteMutes(List<ActiveMute> mutes) {
+        return withConnection("removing " + mutes.size() + " lifted mute(s)", connection -> {
+            try (PreparedStatement ps = prepare(connection, SQLStatement.DELETE_MUTE)) {
+                for (ActiveMute mute : mutes) {
+                    ps.setLong(1, mute.getTicket());
+                    ps.addBatch();
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
+                ps.executeBatch();
             }
             return null;
         });
-        try {
-            future.get();
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-        }
     }
 
     /**
      * This method will get a deleted message and the information associated with that message
      *
      * @param id The Id of the message
-     * @return A THashMap containing the information about the message
+     * @return A THashMap containing the information about the message. The map is empty if the message was never archived
      */
-    THashMap<String, String> getDeletedMessage(String id) {
-        Connection connection = getConnection();
-        Mono<THashMap<String, String>> map = Mono.just(connection).map(c -> {
+    Mono<THashMap<String, String>> getDeletedMessage(long id) {
+        return withConnection("looking up a deleted message", c -> {
             THashMap<String, String> message = new THashMap<>();
-            try {
-                ResultSet set = c.prepareStatement("SELECT * FROM " + prefix + "messages WHERE id = '" + id + "'").executeQuery();
-                while (set.next()) {
-                    message.put("id", id);
-                    message.put("content", set.getString("content"));
-                    message.put("author", set.getString("author"));
-                    message.put("authorName", set.getString("author_name"));
-                    message.put("channel", set.getString("channel"));
+            try (PreparedStatement select = prepare(c, SQLStatement.SELECT_MESSAGE)) {
+                select.setLong(1, id);
+                try (ResultSet set = select.executeQuery()) {
+                    while (set.next()) {
+                        message.put("id", Long.toUnsignedString(id));
+                        message.put("content", set.getString("content"));
+                        message.put("author", set.getString("author"));
+                        message.put("authorName", set.getString("author_name"));
+                        message.put("channel", set.getString("channel"));
+                    }
                 }
-                c.prepareStatement("DELETE FROM " + prefix + "messages WHERE id = '" + id + "'").execute();
-                connection.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
-
             }
             return message;
-        });
-        return map.block();
+        })
+                // Removed through the archiver, in case the message is still waiting to be written. This happens after
+                // the connection is returned, as queueing the removal can wait for room in the queue
+                .doOnNext(message -> archiver.delete(id))
+                .defaultIfEmpty(new THashMap<>());
     }
 
     /**
      * Checks if a user has linked their discord account to their minecraft account
      *
-     * @param discordId     The string representation of the Discord Id
+     * @param discordId     The Discord Id
      * @param minecraftUUId The UUId of the player we are looking for
-     * @return The truth value of the existence of a link in the database
+     * @return The truth value of the existence of a link in the database, or an error if the database could not be queried
      */
-    public boolean isUserLinked(String discordId, UUID minecraftUUId) {
-        Connection connection = getConnection();
-        Future<Boolean> future = CompletableFuture.supplyAsync(() -> {
-            boolean isLinked;
-
-            try {
-                PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + prefix + "links WHERE id = '" + minecraftUUId.toString() + "' OR discord = '" + discordId + "'");
-                ResultSet resultSet = statement.executeQuery();
-
-                isLinked = resultSet.next();
-                return isLinked;
-            } catch (SQLException e) {
-                e.printStackTrace();
+    public Mono<Boolean> isUserLinked(long discordId, UUID minecraftUUId) {
+        return onConnection(connection -> {
+            try (PreparedStatement statement = prepare(connection, SQLStatement.SELECT_LINK)) {
+                statement.setString(1, minecraftUUId.toString());
+                statement.setLong(2, discordId);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next();
+                }
             }
-            return null;
         });
-
-        try {
-            return future.get();
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-        }
-        return false;
     }
 
     /**
      * Checks if a user has linked their discord account to their minecraft account
      *
-     * @param discordId The string representation of the Discord Id
+     * @param discordId The Discord Id
      * @return The truth value of the existence of a link in the database
      */
-    public boolean isUserLinked(String discordId) {
-        Connection connection = getConnection();
-        Future<Boolean> future = CompletableFuture.supplyAsync(() -> {
-            boolean isLinked;
-
-            try {
-                PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + prefix + "links WHERE discord = '" + discordId + "'");
-                ResultSet resultSet = statement.executeQuery();
+    public Mono<Boolean> isUserLinked(long discordId) {
+        return withConnection("checking if a user is linked", connection -> {
+            try (PreparedStatement statement = prepare(connection, SQLStatement.SELECT_LINK_BY_DISCORD)) {
+                statement.setLong(1, discordId);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next();
+                }
+            }
+        }).defaultIfEmpty(false);
+    }
 
-                isLinked = resultSet.next();
-                return isLinked;
-            } catch (SQLException e) {
-                e.printStackTrace();
+    /**
+     * Gets the minecraft account a Discord user is linked to
+     *
+     * @param user The Discord user
+     * @return The UUID of the linked player, or an empty Mono if the user is not linked
+     */
+    public Mono<String> getPlayerFromLink(User user) {
+        return withConnection("looking up a linked player", connection -> {
+            try (PreparedStatement statement = prepare(connection, SQLStatement.SELECT_LINK_BY_DISCORD)) {
+                statement.setLong(1, user.getId().asLong());
+                try (ResultSet set = statement.executeQuery()) {
+                    return set.next() ? set.getString("id") : null;
+                }
             }
-            return null;
         });
+    }
 
+    /**
+     * Queues a message to be added to the SQL database. The message is written in the background, together with other messages.
+     * If the message already exists, its content is updated.
+     *
+     * @param message The message to add
+     */
+    void addMessage(ArchivedMessage message) {
+        archiver.archive(message);
+    }
+
+    /**
+     * Changes the content of a message in the SQL database
+     *
+     * @param id      The Id of the message
+     * @param content The new content of the message
+     * @return A Mono completing once the message has been updated
+     */
+    Mono<Void> updateMessageContent(long id, String content) {
+        return update(SQLStatement.UPDATE_MESSAGE_CONTENT, ps -> {
+            ps.setString(1, content);
+            ps.setLong(2, id);
+        });
+    }
+
+    /**
+     * Queues a message to be removed from the SQL database. The message is removed in the background, after it has
+     * been written if it is still waiting to be.
+     *
+     * @param id The Id of the message
+     */
+    void deleteMessage(long id) {
+        archiver.delete(id);
+    }
+
+    /**
+     * Adds a page of a channel's history to the SQL database as a single batch on the JDBC scheduler. Messages that
+     * already exist have their content updated. The checkpoint of the channel is moved forward in the same transaction,
+     * so it only ever covers history that was archived without gaps.
+     *
+     * @param messages   The messages to add
+     * @param channel    The Id of the channel
+     * @param checkpoint The Id of the last message of the page, which may itself not be archived
+     * @return A Mono completing once the batch has been written, or erroring if it could not be
+     */
+    public Mono<Void> insertMessages(List<ArchivedMessage> messages, long channel, long checkpoint) {
+        return Mono.fromCallable(() -> {
+            writeMessages(messages, channel, checkpoint);
+            return true;
+        }).subscribeOn(scheduler).then();
+    }
+
+    /**
+     * Writes a batch of live messages on the calling thread. Used by the archiver, which has a thread of its own.
+     * Live messages never move a checkpoint, as the history before them may not have been archived yet.
+     *
+     * @param messages The messages to add
+     */
+    private void archiveMessages(List<ArchivedMessage> messages) {
         try {
-            return future.get();
-        } catch (InterruptedException | ExecutionException e) {
+            writeMessages(messages, 0, 0);
+        } catch (SQLException e) {
+            System.err.print("An error occurred while archiving " + messages.size() + " message(s). See stacktrace below for more information.");
             e.printStackTrace();
         }
-        return false;
     }
 
-    public String getPlayerFromLink(Member user) {
-        Connection connection = getConnection();
-        Future<String> future = CompletableFuture.supplyAsync(() -> {
+    /**
+     * Removes a batch of messages on the calling thread. Used by the archiver, which has a thread of its own.
+     *
+     * @param messages The messages to remove
+     */
+    private void removeMessages(List<ArchivedMessage> messages) {
+        try (Connection connection = getConnection();
+             PreparedStatement delete = prepare(connection, SQLStatement.DELETE_MESSAGE)) {
+            for (ArchivedMessage message : messages) {
+                delete.setLong(1, message.getId());
+                delete.addBatch();
+            }
+            delete.executeBatch();
+        } catch (SQLException e) {
+            System.err.print("An error occurred while removing " + messages.size() + " message(s). See stacktrace below for more information.");
+            e.printStackTrace();
+        }
+    }
 
-            try {
-                PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + prefix + "links WHERE discord = '" + user.getId().asString() + "'");
-                ResultSet set = statement.executeQuery();
+    /**
+     * Writes a batch of messages on the calling thread
+     *
+     * @param messages   The messages to add
+     * @param channel    The Id of the channel to move the checkpoint of, or 0 to leave every checkpoint alone
+     * @param checkpoint The Id to move the checkpoint to
+     */
+    private void writeMessages(List<ArchivedMessage> messages, long channel, long checkpoint) throws SQLException {
+        if (messages.isEmpty() && channel == 0) {
+            return;
+        }
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = prepare(connection, SQLStatement.INSERT_MESSAGE);
+                 PreparedStatement upsert = prepare(connection, SQLStatement.UPSERT_CHECKPOINT)) {
+                for (ArchivedMessage message : messages) {
+                    insert.setLong(1, message.getId());
+                    insert.setString(2, message.getContent());
+                    insert.setLong(3, message.getAuthor());
+                    insert.setString(4, message.getAuthorName());
+                    insert.setLong(5, message.getChannel());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                if (channel != 0) {
+                    upsert.setLong(1, channel);
+                    upsert.setLong(2, checkpoint);
+                    upsert.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
 
+    /**
+     * Gets the last archived message of every channel
+     *
+     * @return A map from channel Id to the Id of the last archived message in that channel
+     */
+    public Mono<TLongLongMap> getCheckpoints() {
+        return withConnection("loading the channel checkpoints", connection -> {
+            TLongLongMap checkpoints = new TLongLongHashMap();
+            try (PreparedStatement ps = prepare(connection, SQLStatement.SELECT_CHECKPOINTS);
+                 ResultSet set = ps.executeQuery()) {
                 while (set.next()) {
-                    return set.getString("id");
+                    checkpoints.put(set.getLong("channel"), set.getLong("last_message"));
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
             }
-            return null;
+            return checkpoints;
+        });
+    }
 
+    /**
+     * Adds a bulk role change to the database
+     *
+     * @param role    The Id of the role
+     * @param add     True if the role is added, false if it is removed
+     * @param channel The Id of the channel progress is reported to
+     * @return The Id of the job
+     */
+    public Mono<Long> insertRoleJob(long role, boolean add, long channel) {
+        return insert(SQLStatement.INSERT_ROLE_JOB, ps -> {
+            ps.setLong(1, role);
+            ps.setInt(2, add ? 1 : 0);
+            ps.setLong(3, channel);
         });
+    }
 
-        try {
-            return future.get();
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
-        }
-        return null;
+    /**
+     * Records how far a bulk role change has come
+     *
+     * @param id         The Id of the job
+     * @param lastMember The Id of the last member that was handled
+     * @param done       The amount of members that were handled
+     * @return A Mono completing once the progress has been recorded
+     */
+    public Mono<Void> updateRoleJob(long id, long lastMember, int done) {
+        return update(SQLStatement.UPDATE_ROLE_JOB, ps -> {
+            ps.setLong(1, lastMember);
+            ps.setInt(2, done);
+            ps.setLong(3, id);
+        });
     }
 
     /**
-     * Adds a message to the SQL database
+     * Removes a finished bulk role change from the database
      *
-     * @param message The message to add
+     * @param id The Id of the job
+     * @return A Mono completing once the job has been removed
      */
-    void addMessage(Message message) {
-        User u = message.getAuthor().orElseThrow(ArgumentException::new);
-        TextChannel c = message.getChannel().filter(ch -> ch instanceof TextChannel).cast(TextChannel.class).block();
-        executeStatementAndPost("INSERT INTO " + prefix + "messages (id, content, author, author_name, channel) values ('%s','%s','%s','%s','%s')",
-                message.getId().asString(), message.getContent().get().replaceAll("'", "¼"), u.getId().asString(), u.getUsername(), c.getId().asString());
+    public Mono<Void> deleteRoleJob(long id) {
+        return update(SQLStatement.DELETE_ROLE_JOB, ps -> ps.setLong(1, id));
+    }
+
+    /**
+     * Gets every bulk role change that has not finished
+     *
+     * @return The jobs, oldest first
+     */
+    public Mono<List<RoleJob>> getRoleJobs() {
+        return withConnection("loading the role jobs", connection -> {
+            List<RoleJob> jobs = new ArrayList<>();
+            try (PreparedStatement ps = prepare(connection, SQLStatement.SELECT_ROLE_JOBS);
+                 ResultSet set = ps.executeQuery()) {
+                while (set.next()) {
+                    jobs.add(new RoleJob(set.getLong("id"), set.getLong("role"), set.getInt("action") == 1,
+                            set.getLong("channel"), set.getLong("last_member"), set.getInt("done")));
+                }
+            }
+            return jobs;
+        });
     }
-}
\ No newline at end of file
+}
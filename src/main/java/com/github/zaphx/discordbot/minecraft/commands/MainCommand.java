@@ -1,16 +1,30 @@
 package com.github.zaphx.discordbot.minecraft.commands;
 
 import com.github.zaphx.discordbot.Dizcord;
+import com.github.zaphx.discordbot.api.commandhandler.CommandHandler;
+import com.github.zaphx.discordbot.api.dispatch.OrderedDispatcher;
+import com.github.zaphx.discordbot.api.pipeline.MessagePipeline;
+import com.github.zaphx.discordbot.api.pipeline.StageTimer;
+import com.github.zaphx.discordbot.discord.raid.RaidDetector;
+import com.github.zaphx.discordbot.managers.AntiSwearManager;
 import com.github.zaphx.discordbot.managers.DiscordClientManager;
 import com.github.zaphx.discordbot.managers.MessageManager;
+import com.github.zaphx.discordbot.managers.RoleJobManager;
 import com.github.zaphx.discordbot.managers.RolesManager;
 import com.github.zaphx.discordbot.managers.SQLManager;
+import discord4j.core.object.util.Snowflake;
 import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 import static org.bukkit.ChatColor.*;
 
@@ -20,7 +34,9 @@ public class MainCommand implements CommandExecutor {
     MessageManager messageManager = MessageManager.getInstance();
     DiscordClientManager clientManager = DiscordClientManager.getInstance();
     RolesManager rolesManager = RolesManager.getInstance();
+    RoleJobManager roleJobManager = RoleJobManager.getInstance();
     SQLManager sql = SQLManager.getInstance();
+    AntiSwearManager antiSwearManager = AntiSwearManager.getInstance();
     FileConfiguration config = Dizcord.getInstance().getConfig();
 
     @Override
@@ -36,23 +52,40 @@ public class MainCommand implements CommandExecutor {
             if (!(sender instanceof Player)) {
                 sender.sendMessage(RED + "Only players can perform this command!");
                 return true;
-            } else if (messageManager.hashes.get(hash).getUniqueId() == ((Player) sender).getUniqueId()) {
+            } else if (messageManager.hashes.containsKey(hash) && messageManager.hashes.get(hash).getUniqueId().equals(((Player) sender).getUniqueId())) {
                 Player sender_p = (Player) sender;
-                if (!sql.isUserLinked(
-                        messageManager.discord.get(hash).getId().asString(),
-                        sender_p.getUniqueId())) {
-                    sql.executeStatementAndPost("INSERT INTO %slinks (id, hash, discord) values ('%s','%s','%s')",
-                            sql.prefix, sender_p.getUniqueId().toString(), hash, messageManager.discord.get(hash).getId().asString());
-                    sender.sendMessage("Your account was linked!");
-                    if (sender.hasPermission("dizcord.donator")) messageManager.discord.get(hash).addRole(rolesManager.getRole("Donator")).subscribe();
-                    if (sender.hasPermission("group.builder")) messageManager.discord.get(hash).addRole(rolesManager.getRole("Builder")).subscribe();
-                    if (sender.hasPermission("group.redstone")) messageManager.discord.get(hash).addRole(rolesManager.getRole("Redstone")).subscribe();
-                    if (sender.hasPermission("group.advbuilder")) messageManager.discord.get(hash).addRole(rolesManager.getRole("Advanced Builder")).subscribe();
-                    return true;
-                } else {
-                    sender.sendMessage(RED + "Your account is already linked!");
-                    return true;
-                }
+                // The hash is used up right away, so running the command twice in a row cannot link twice
+                messageManager.hashes.remove(hash);
+                long discordId = messageManager.discord.remove(hash);
+                // Permissions can only be checked on the main thread
+                List<Snowflake> roles = new ArrayList<>();
+                if (sender.hasPermission("dizcord.donator")) roles.add(rolesManager.getRole("Donator"));
+                if (sender.hasPermission("group.builder")) roles.add(rolesManager.getRole("Builder"));
+                if (sender.hasPermission("group.redstone")) roles.add(rolesManager.getRole("Redstone"));
+                if (sender.hasPermission("group.advbuilder")) roles.add(rolesManager.getRole("Advanced Builder"));
+                roles.removeIf(Objects::isNull);
+                // The database is not queried on the main thread, so the result is reported once it arrives.
+                // The link only counts once it has been written, and the outcome is handled back on the main thread
+                sql.isUserLinked(discordId, sender_p.getUniqueId())
+                        .flatMap(linked -> linked ? Mono.just(false) : sql.insertLink(sender_p.getUniqueId(), hash, discordId).thenReturn(true))
+                        .subscribe(inserted -> Bukkit.getScheduler().runTask(Dizcord.getInstance(), () -> {
+                            if (!inserted) {
+                                sender.sendMessage(RED + "Your account is already linked!");
+                                return;
+                            }
+                            sender.sendMessage("Your account was linked!");
+                            roleJobManager.change(discordId, roles, true);
+                        }), e -> {
+                            System.err.print("An error occurred while linking an account. See stacktrace below for more information.");
+                            e.printStackTrace();
+                            Bukkit.getScheduler().runTask(Dizcord.getInstance(), () -> {
+                                // The hash is handed back, so the player can try again
+                                messageManager.hashes.put(hash, sender_p);
+                                messageManager.discord.put(hash, discordId);
+                                sender.sendMessage(RED + "Your account could not be linked. Please try again later.");
+                            });
+                        });
+                return true;
             } else {
                 sender.sendMessage(RED + "That link does not belong to you!");
             }
@@ -90,6 +123,49 @@ public class MainCommand implements CommandExecutor {
                     sender.sendMessage(GREEN + "Bot already logged out");
                 }
                 break;
+            case "reloadfilters":
+                sender.sendMessage(GREEN + "Reloading the filters...");
+                antiSwearManager.reload().subscribe(filters -> sender.sendMessage(GREEN + "Loaded " + filters.getWords().getWordCount() + " words, "
+                                + filters.getWords().getAllowedCount() + " allowed words and " + filters.getPatternCount() + " patterns in "
+                                + TimeUnit.NANOSECONDS.toMillis(filters.getBuildTime()) + " ms. The filter has " + filters.getWords().getStateCount() + " states."),
+                        e -> sender.sendMessage(RED + "The filters could not be reloaded: " + e.getMessage()));
+                Bukkit.getLogger().info(sender.getName() + " reloaded the filters");
+                break;
+            case "pipeline":
+                sender.sendMessage(GREEN + "Chat message stages, in the order they run:");
+                for (StageTimer timer : MessagePipeline.getInstance().getTimers()) {
+                    sender.sendMessage(GREEN + timer.getName() + ": " + timer.getCount() + " messages, "
+                            + TimeUnit.NANOSECONDS.toMicros(timer.getAverage()) + " \u00b5s average, "
+                            + TimeUnit.NANOSECONDS.toMicros(timer.getMax()) + " \u00b5s max");
+                }
+                break;
+            case "dispatch":
+                OrderedDispatcher dispatcher = OrderedDispatcher.getInstance();
+                sender.sendMessage(GREEN + "Events queued: " + dispatcher.getDispatched() + ", dropped: " + dispatcher.getDropped()
+                        + ". Channels busy: " + dispatcher.getActiveGroups() + ", longest queue: " + dispatcher.getHighWatermark());
+                break;
+            case "commands":
+                sender.sendMessage(GREEN + "Commands running or waiting to run:");
+                CommandHandler.getInstance().getRunningCommands().forEachEntry((name, running) -> {
+                    sender.sendMessage(GREEN + name + ": " + running);
+                    return true;
+                });
+                break;
+            case "cancelcommands":
+                CommandHandler.getInstance().cancelAllCommands();
+                sender.sendMessage(GREEN + "Every running command was cancelled");
+                Bukkit.getLogger().info(sender.getName() + " cancelled every running command");
+                break;
+            case "raid":
+                RaidDetector raidDetector = RaidDetector.getInstance();
+                sender.sendMessage(GREEN + "Raid mode is " + (raidDetector.isRaid() ? "on" : "off") + ". Members joined in the last "
+                        + raidDetector.getWindow() + " seconds: " + raidDetector.getRecentJoins());
+                break;
+            case "endraid":
+                RaidDetector.getInstance().endRaid();
+                sender.sendMessage(GREEN + "Raid mode was ended");
+                Bukkit.getLogger().info(sender.getName() + " ended raid mode");
+                break;
             default:
                 sender.sendMessage("Invalid command");
         }
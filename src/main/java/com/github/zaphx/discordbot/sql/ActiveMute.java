@@ -0,0 +1,58 @@
+package com.github.zaphx.discordbot.sql;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable row of the mutes table that has not been lifted yet. It becomes available from a
+ * {@link java.util.concurrent.DelayQueue} once the mute expires.
+ */
+public class ActiveMute implements Delayed {
+
+    private final long ticket;
+    private final long id;
+    private final long type;
+    private final long expires;
+
+    /**
+     * @param ticket  The ticket of the mute
+     * @param id      The Id of the muted user
+     * @param type    The Id of the mute role
+     * @param expires When the mute expires, in milliseconds since the epoch
+     */
+    public ActiveMute(long ticket, long id, long type, long expires) {
+        this.ticket = ticket;
+        this.id = id;
+        this.type = type;
+        this.expires = expires;
+    }
+
+    public long getTicket() {
+        return ticket;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getType() {
+        return type;
+    }
+
+    public long getExpires() {
+        return expires;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(expires - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+        if (other instanceof ActiveMute) {
+            return Long.compare(expires, ((ActiveMute) other).expires);
+        }
+        return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+    }
+}
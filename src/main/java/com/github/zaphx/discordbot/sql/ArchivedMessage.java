@@ -0,0 +1,83 @@
+package com.github.zaphx.discordbot.sql;
+
+import com.github.zaphx.discordbot.utilities.ArgumentException;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.User;
+
+/**
+ * An immutable row of the messages table, detached from the Discord4J message it was created from.
+ */
+public class ArchivedMessage {
+
+    private final long id;
+    private final String content;
+    private final long author;
+    private final String authorName;
+    private final long channel;
+    private final boolean deletion;
+
+    public ArchivedMessage(long id, String content, long author, String authorName, long channel) {
+        this(id, content, author, authorName, channel, false);
+    }
+
+    private ArchivedMessage(long id, String content, long author, String authorName, long channel, boolean deletion) {
+        this.id = id;
+        this.content = content;
+        this.author = author;
+        this.authorName = authorName;
+        this.channel = channel;
+        this.deletion = deletion;
+    }
+
+    /**
+     * Creates a row that removes a message from the table, rather than adding it
+     *
+     * @param id The Id of the message
+     * @return The row removing the message
+     */
+    static ArchivedMessage deletion(long id) {
+        return new ArchivedMessage(id, null, 0, null, 0, true);
+    }
+
+    /**
+     * Creates a row from a Discord message without making any requests
+     *
+     * @param message The message to archive
+     * @return The row representing the message
+     */
+    public static ArchivedMessage of(Message message) {
+        User author = message.getAuthor().orElseThrow(ArgumentException::new);
+        return new ArchivedMessage(message.getId().asLong(),
+                message.getContent().orElse(""),
+                author.getId().asLong(),
+                author.getUsername(),
+                message.getChannelId().asLong());
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public long getAuthor() {
+        return author;
+    }
+
+    public String getAuthorName() {
+        return authorName;
+    }
+
+    public long getChannel() {
+        return channel;
+    }
+
+    /**
+     * @return True if this row removes the message from the table
+     */
+    public boolean isDeletion() {
+        return deletion;
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.zaphx.discordbot.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Work done with a borrowed connection. The connection is returned to the pool once the callback returns.
+ *
+ * @param <T> The type of the result
+ */
+@FunctionalInterface
+public interface ConnectionCallback<T> {
+
+    /**
+     * @param connection The borrowed connection. It must not be closed or kept after the callback returns
+     * @return The result, or null if there is none
+     * @throws SQLException If a database access error occurs
+     */
+    T doInConnection(Connection connection) throws SQLException;
+}
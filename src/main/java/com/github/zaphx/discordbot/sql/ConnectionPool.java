@@ -0,0 +1,316 @@
+package com.github.zaphx.discordbot.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded pool of JDBC connections. Connections handed out by the pool are returned to it when they are closed,
+ * so callers should always use them in a try-with-resources block.
+ */
+public class ConnectionPool {
+
+    /**
+     * Connections that have been used within this window are not validated again when borrowed.
+     */
+    private static final long VALIDATION_BYPASS_WINDOW = 500L;
+    /**
+     * How often the housekeeper evicts idle connections, refills the pool and looks for leaks.
+     */
+    private static final long HOUSEKEEPING_PERIOD = 30_000L;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long connectionTimeout;
+    private final long idleTimeout;
+    private final int validationTimeout;
+    private final long leakDetectionThreshold;
+    private final Logger log;
+
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger total = new AtomicInteger();
+    private final Semaphore permits;
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new connection pool and opens the minimum amount of connections.
+     *
+     * @param url                    The JDBC url of the database
+     * @param username               The username used to log in
+     * @param password               The password used to log in
+     * @param minSize                The amount of connections kept open at all times
+     * @param maxSize                The maximum amount of connections that can be open at once
+     * @param connectionTimeout      How long, in milliseconds, to wait for a connection before giving up
+     * @param idleTimeout            How long, in milliseconds, a connection above the minimum may stay idle
+     * @param validationTimeout      How long, in seconds, to wait for a connection to be validated
+     * @param leakDetectionThreshold How long, in milliseconds, a connection may be borrowed before it is reported as leaked. 0 disables leak detection
+     * @param log                    The logger to report problems to
+     */
+    public ConnectionPool(String url, String username, String password, int minSize, int maxSize, long connectionTimeout,
+                          long idleTimeout, int validationTimeout, long leakDetectionThreshold, Logger log) {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size. min-size must be between 0 and max-size, and max-size must be at least 1");
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.connectionTimeout = connectionTimeout;
+        this.idleTimeout = idleTimeout;
+        this.validationTimeout = validationTimeout;
+        this.leakDetectionThreshold = leakDetectionThreshold;
+        this.log = log;
+        this.permits = new Semaphore(maxSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Dizcord-SQL-Housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        fill();
+        housekeeper.scheduleWithFixedDelay(this::housekeep, HOUSEKEEPING_PERIOD, HOUSEKEEPING_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool. The connection is returned to the pool when it is closed.
+     *
+     * @return A validated connection
+     * @throws SQLException If no connection could be obtained within the connection timeout
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("The connection pool has been shut down");
+        }
+        try {
+            if (!permits.tryAcquire(connectionTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timed out after " + connectionTimeout + "ms waiting for a connection. All " + maxSize + " connections are in use");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            PooledConnection entry;
+            while ((entry = idle.pollFirst()) != null && !isUsable(entry)) {
+                discard(entry);
+            }
+            if (entry == null) {
+                entry = open();
+            }
+            entry.borrowedAt = System.currentTimeMillis();
+            entry.borrowTrace = leakDetectionThreshold > 0 ? new Throwable("Connection was borrowed here") : null;
+            entry.leakReported = false;
+            borrowed.add(entry);
+            return entry.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes every idle connection and stops the pool. Borrowed connections are closed when they are returned.
+     */
+    public void shutdown() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection entry;
+        while ((entry = idle.pollFirst()) != null) {
+            discard(entry);
+        }
+        if (!borrowed.isEmpty()) {
+            log.warning(borrowed.size() + " SQL connection(s) were still in use when the pool was shut down");
+        }
+    }
+
+    /**
+     * @return The amount of connections currently borrowed from the pool
+     */
+    public int getActiveConnections() {
+        return borrowed.size();
+    }
+
+    /**
+     * @return The amount of open connections waiting to be borrowed
+     */
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    /**
+     * @return The amount of connections currently open
+     */
+    public int getTotalConnections() {
+        return total.get();
+    }
+
+    private PooledConnection open() throws SQLException {
+        PooledConnection entry = new PooledConnection(DriverManager.getConnection(url, username, password));
+        total.incrementAndGet();
+        return entry;
+    }
+
+    private boolean isUsable(PooledConnection entry) {
+        try {
+            if (entry.raw.isClosed()) {
+                return false;
+            }
+            return System.currentTimeMillis() - entry.lastUsed < VALIDATION_BYPASS_WINDOW || entry.raw.isValid(validationTimeout);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection entry) {
+        total.decrementAndGet();
+        try {
+            entry.raw.close();
+        } catch (SQLException ignored) {
+            // The connection is being thrown away, so there is nothing left to do
+        }
+    }
+
+    private void release(PooledConnection entry) {
+        borrowed.remove(entry);
+        try {
+            if (closed || entry.broken || entry.raw.isClosed()) {
+                discard(entry);
+                return;
+            }
+            if (!entry.raw.getAutoCommit()) {
+                entry.raw.rollback();
+                entry.raw.setAutoCommit(true);
+            }
+            entry.lastUsed = System.currentTimeMillis();
+            // Most recently used connections are handed out first, so the oldest ones can go idle and be evicted
+            idle.offerFirst(entry);
+        } catch (SQLException e) {
+            discard(entry);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+            Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+            while (oldestFirst.hasNext() && total.get() > minSize) {
+                PooledConnection entry = oldestFirst.next();
+                if (now - entry.lastUsed > idleTimeout && idle.remove(entry)) {
+                    discard(entry);
+                }
+            }
+            fill();
+            if (leakDetectionThreshold > 0) {
+                for (PooledConnection entry : borrowed) {
+                    if (!entry.leakReported && now - entry.borrowedAt > leakDetectionThreshold) {
+                        entry.leakReported = true;
+                        log.log(Level.WARNING, "An SQL connection has been in use for more than " + leakDetectionThreshold + "ms and might have been leaked", entry.borrowTrace);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "An error occurred while maintaining the SQL connection pool", e);
+        }
+    }
+
+    private void fill() {
+        while (!closed && total.get() < minSize) {
+            try {
+                PooledConnection entry = open();
+                entry.lastUsed = System.currentTimeMillis();
+                idle.offerLast(entry);
+            } catch (SQLException e) {
+                System.err.print("An error occurred while establishing connection to the SQL server. See stacktrace below for more information.");
+                e.printStackTrace();
+                return;
+            }
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool, along with the bookkeeping needed to validate, evict and track it.
+     */
+    private final class PooledConnection {
+
+        private final Connection raw;
+        private volatile long lastUsed;
+        private volatile long borrowedAt;
+        private volatile Throwable borrowTrace;
+        private volatile boolean leakReported;
+        private volatile boolean broken;
+
+        private PooledConnection(Connection raw) {
+            this.raw = raw;
+        }
+
+        /**
+         * Wraps the physical connection in a proxy that returns it to the pool instead of closing it.
+         *
+         * @return The connection handed out to the caller
+         */
+        private Connection lease() {
+            InvocationHandler handler = new InvocationHandler() {
+                private boolean returned;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!returned) {
+                                returned = true;
+                                release(PooledConnection.this);
+                            }
+                            return null;
+                        case "isClosed":
+                            return returned || raw.isClosed();
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Pooled" + raw;
+                        case "unwrap":
+                        case "isWrapperFor":
+                            break;
+                        default:
+                            if (returned) {
+                                throw new SQLException("The connection has already been returned to the pool");
+                            }
+                    }
+                    try {
+                        return method.invoke(raw, args);
+                    } catch (InvocationTargetException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof SQLException) {
+                            String state = ((SQLException) cause).getSQLState();
+                            // SQL state class 08 means the connection itself is broken
+                            if (state != null && state.startsWith("08")) {
+                                broken = true;
+                            }
+                        }
+                        throw cause;
+                    }
+                }
+            };
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.github.zaphx.discordbot.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Buffers chat messages in a bounded queue and writes them to the database in batches on a background thread.
+ * A batch is written once it is full, or once the flush interval has passed since its first message was queued.
+ * <p>
+ * Deleted messages are removed through the same queue, so a message is never removed before it was written and then
+ * written back by a batch that was still waiting.
+ */
+public class MessageArchiver {
+
+    private final BlockingQueue<ArchivedMessage> queue;
+    private final Consumer<List<ArchivedMessage>> writer;
+    private final Consumer<List<ArchivedMessage>> deleter;
+    private final int batchSize;
+    private final long flushInterval;
+    private final long offerTimeout;
+    private final Logger log;
+    private final Thread thread;
+    private volatile boolean running;
+
+    /**
+     * Creates a new archiver. It will not write anything until it is started.
+     *
+     * @param writer        Writes a batch of messages to the database
+     * @param deleter       Removes a batch of messages from the database
+     * @param capacity      The maximum amount of messages waiting to be written
+     * @param batchSize     The maximum amount of messages written at once
+     * @param flushInterval How long, in milliseconds, a message may wait for its batch to fill up
+     * @param offerTimeout  How long, in milliseconds, to wait for room in a full queue before the caller writes the message itself
+     * @param log           The logger to report problems to
+     */
+    public MessageArchiver(Consumer<List<ArchivedMessage>> writer, Consumer<List<ArchivedMessage>> deleter, int capacity, int batchSize, long flushInterval, long offerTimeout, Logger log) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = writer;
+        this.deleter = deleter;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.offerTimeout = offerTimeout;
+        this.log = log;
+        this.thread = new Thread(this::run, "Dizcord-Message-Archiver");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the background writer
+     */
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Queues a message to be written to the database. If the queue stays full for longer than the offer timeout,
+     * the message is written on the calling thread instead, which slows producers down to the speed of the database.
+     *
+     * @param message The message to archive
+     */
+    public void archive(ArchivedMessage message) {
+        if (running) {
+            try {
+                if (queue.offer(message, offerTimeout, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        write(Collections.singletonList(message));
+    }
+
+    /**
+     * Queues a message to be removed from the database, after every message queued before it has been written. If the
+     * queue stays full for longer than the offer timeout, the message is removed on the calling thread instead, like
+     * {@link #archive(ArchivedMessage)} does.
+     *
+     * @param id The Id of the message to remove
+     */
+    public void delete(long id) {
+        ArchivedMessage deletion = ArchivedMessage.deletion(id);
+        if (running) {
+            try {
+                if (queue.offer(deletion, offerTimeout, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        write(Collections.singletonList(deletion));
+    }
+
+    /**
+     * Stops accepting messages and waits for every queued message to be written
+     *
+     * @param timeout How long, in milliseconds, to wait for the queue to drain
+     */
+    public void shutdown(long timeout) {
+        if (!running) {
+            return;
+        }
+        // The writer is not interrupted, as that would abort a batch that is being written
+        running = false;
+        try {
+            thread.join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive() || !queue.isEmpty()) {
+            log.warning("The message archiver did not finish in time. " + queue.size() + " message(s) were not written to the database");
+        }
+    }
+
+    /**
+     * @return The amount of messages waiting to be written
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<ArchivedMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                ArchivedMessage first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + flushInterval;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    ArchivedMessage next = remaining > 0 ? queue.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Write what we have and keep draining until the queue is empty
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes a batch in the order it was queued. Runs of new messages and runs of removals are written separately
+     */
+    private void write(List<ArchivedMessage> batch) {
+        int start = 0;
+        for (int i = 1; i <= batch.size(); i++) {
+            if (i == batch.size() || batch.get(i).isDeletion() != batch.get(start).isDeletion()) {
+                List<ArchivedMessage> run = batch.subList(start, i);
+                try {
+                    (run.get(0).isDeletion() ? deleter : writer).accept(run);
+                } catch (RuntimeException e) {
+                    log.log(Level.WARNING, "Could not " + (run.get(0).isDeletion() ? "remove " : "archive ") + run.size() + " message(s)", e);
+                }
+                start = i;
+            }
+        }
+    }
+}
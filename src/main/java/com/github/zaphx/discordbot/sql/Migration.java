@@ -0,0 +1,102 @@
+package com.github.zaphx.discordbot.sql;
+
+import org.intellij.lang.annotations.Language;
+
+/**
+ * Every change made to the database schema, in the order they are applied. A migration is applied once and then
+ * recorded in the schema_version table. Migrations must never be changed once released; add a new one instead.
+ */
+public enum Migration {
+
+    /**
+     * The tables as they were before migrations existed, so databases created by older versions are left untouched
+     */
+    CREATE_TABLES(1, "Create tables",
+            "CREATE TABLE IF NOT EXISTS %smutes (\n" +
+                    "ticket INTEGER NOT NULL AUTO_INCREMENT PRIMARY KEY, \n" +
+                    "id BIGINT UNSIGNED NOT NULL, \n" +
+                    "time DATETIME NOT NULL DEFAULT NOW(), \n" +
+                    "muter BIGINT UNSIGNED NOT NULL, \n" +
+                    "expires BIGINT UNSIGNED NOT NULL, \n" +
+                    "type BIGINT UNSIGNED NOT NULL" +
+                    ")",
+            "CREATE TABLE IF NOT EXISTS %slinks (\n" +
+                    "id VARCHAR(255) NOT NULL PRIMARY KEY, \n" +
+                    "hash BIGINT UNSIGNED NOT NULL, \n" +
+                    "time DATETIME NOT NULL DEFAULT NOW(), \n" +
+                    "discord BIGINT NOT NULL" +
+                    ")",
+            "CREATE TABLE IF NOT EXISTS %swarnings (\n" +
+                    "ticket INTEGER NOT NULL AUTO_INCREMENT PRIMARY KEY, \n" +
+                    "id BIGINT UNSIGNED NOT NULL,\n" +
+                    "reason VARCHAR(255) NOT NULL, \n" +
+                    "warnee BIGINT UNSIGNED NOT NULL" +
+                    ")",
+            "CREATE TABLE IF NOT EXISTS %smessages (\n" +
+                    "id BIGINT UNSIGNED PRIMARY KEY NOT NULL,\n" +
+                    "content text, \n" +
+                    "author BIGINT UNSIGNED NOT NULL, \n" +
+                    "author_name VARCHAR(255) NOT NULL, \n" +
+                    "channel BIGINT UNSIGNED NOT NULL" +
+                    ")",
+            "CREATE TABLE IF NOT EXISTS %scheckpoints (\n" +
+                    "channel BIGINT UNSIGNED PRIMARY KEY NOT NULL,\n" +
+                    "last_message BIGINT UNSIGNED NOT NULL" +
+                    ")"),
+    /**
+     * Indexes for the lookups that used to scan the whole table
+     */
+    ADD_INDEXES(2, "Add lookup indexes",
+            "CREATE INDEX links_discord ON %slinks (discord)",
+            "CREATE INDEX mutes_expires ON %smutes (expires)",
+            "CREATE INDEX warnings_id ON %swarnings (id)",
+            "CREATE INDEX messages_channel_id ON %smessages (channel, id)"),
+    /**
+     * Messages used to be stored with every apostrophe replaced by '¼'
+     */
+    DECODE_APOSTROPHES(3, "Restore apostrophes in archived messages",
+            "UPDATE %smessages SET content = REPLACE(content, '¼', '''') WHERE content LIKE '%%¼%%'"),
+    /**
+     * Bulk role changes, so an interrupted one can carry on where it stopped
+     */
+    CREATE_ROLE_JOBS(4, "Create role jobs table",
+            "CREATE TABLE IF NOT EXISTS %srole_jobs (\n" +
+                    "id INTEGER NOT NULL AUTO_INCREMENT PRIMARY KEY, \n" +
+                    "role BIGINT UNSIGNED NOT NULL, \n" +
+                    "action TINYINT NOT NULL, \n" +
+                    "channel BIGINT UNSIGNED NOT NULL, \n" +
+                    "last_member BIGINT UNSIGNED NOT NULL DEFAULT 0, \n" +
+                    "done INTEGER NOT NULL DEFAULT 0, \n" +
+                    "created DATETIME NOT NULL DEFAULT NOW()" +
+                    ")");
+
+    private final int version;
+    private final String description;
+    private final String[] statements;
+
+    Migration(int version, String description, @Language("sql") String... statements) {
+        this.version = version;
+        this.description = description;
+        this.statements = statements;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @param prefix The table prefix from the config
+     * @return The statements of the migration with the table prefix filled in
+     */
+    public String[] getStatements(String prefix) {
+        String[] prefixed = new String[statements.length];
+        for (int i = 0; i < statements.length; i++) {
+            prefixed[i] = String.format(statements[i], prefix);
+        }
+        return prefixed;
+    }
+}
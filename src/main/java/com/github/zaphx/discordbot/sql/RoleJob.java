@@ -0,0 +1,56 @@
+package com.github.zaphx.discordbot.sql;
+
+/**
+ * An immutable row of the role_jobs table, a role being added to or removed from every member that has not finished.
+ * Members are handled in order of their Id, so everything up to and including the last member has been handled.
+ */
+public class RoleJob {
+
+    private final long id;
+    private final long role;
+    private final boolean add;
+    private final long channel;
+    private final long lastMember;
+    private final int done;
+
+    /**
+     * @param id         The Id of the job
+     * @param role       The Id of the role
+     * @param add        True if the role is added, false if it is removed
+     * @param channel    The Id of the channel progress is reported to
+     * @param lastMember The Id of the last member that was handled, or 0 if none were
+     * @param done       The amount of members that were handled
+     */
+    public RoleJob(long id, long role, boolean add, long channel, long lastMember, int done) {
+        this.id = id;
+        this.role = role;
+        this.add = add;
+        this.channel = channel;
+        this.lastMember = lastMember;
+        this.done = done;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getRole() {
+        return role;
+    }
+
+    public boolean isAdd() {
+        return add;
+    }
+
+    public long getChannel() {
+        return channel;
+    }
+
+    public long getLastMember() {
+        return lastMember;
+    }
+
+    public int getDone() {
+        return done;
+    }
+}
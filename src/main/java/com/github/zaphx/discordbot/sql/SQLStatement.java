@@ -0,0 +1,91 @@
+package com.github.zaphx.discordbot.sql;
+
+import org.intellij.lang.annotations.Language;
+
+/**
+ * Every statement the plugin runs against the database. Values are always bound through the setters of
+ * {@link java.sql.PreparedStatement}, so each statement is parsed once per connection and then served from the
+ * driver's statement cache.
+ */
+public enum SQLStatement {
+
+    /**
+     * Binds id, content, author, author_name and channel. Existing messages have their content updated
+     */
+    INSERT_MESSAGE("INSERT INTO %smessages (id, content, author, author_name, channel) VALUES (?,?,?,?,?) " +
+            "ON DUPLICATE KEY UPDATE content = VALUES(content)"),
+    /**
+     * Binds content and id
+     */
+    UPDATE_MESSAGE_CONTENT("UPDATE %smessages SET content = ? WHERE id = ?"),
+    /**
+     * Binds id
+     */
+    SELECT_MESSAGE("SELECT id, content, author, author_name, channel FROM %smessages WHERE id = ?"),
+    /**
+     * Binds id
+     */
+    DELETE_MESSAGE("DELETE FROM %smessages WHERE id = ?"),
+    /**
+     * Binds channel and last_message. The checkpoint only ever moves forward
+     */
+    UPSERT_CHECKPOINT("INSERT INTO %scheckpoints (channel, last_message) VALUES (?,?) " +
+            "ON DUPLICATE KEY UPDATE last_message = GREATEST(last_message, VALUES(last_message))"),
+    SELECT_CHECKPOINTS("SELECT channel, last_message FROM %scheckpoints"),
+    /**
+     * Binds id, muter, expires and type. Generates the ticket
+     */
+    INSERT_MUTE("INSERT INTO %smutes (id, muter, expires, type) VALUES (?,?,?,?)"),
+    SELECT_MUTES("SELECT ticket, id, type, expires FROM %smutes"),
+    /**
+     * Binds ticket
+     */
+    DELETE_MUTE("DELETE FROM %smutes WHERE ticket = ?"),
+    /**
+     * Binds id, reason and warnee. Generates the ticket
+     */
+    INSERT_WARNING("INSERT INTO %swarnings (id, reason, warnee) VALUES (?,?,?)"),
+    /**
+     * Binds id, hash and discord
+     */
+    INSERT_LINK("INSERT INTO %slinks (id, hash, discord) VALUES (?,?,?)"),
+    /**
+     * Binds discord
+     */
+    DELETE_LINK("DELETE FROM %slinks WHERE discord = ?"),
+    /**
+     * Binds id and discord
+     */
+    SELECT_LINK("SELECT id FROM %slinks WHERE id = ? OR discord = ?"),
+    /**
+     * Binds discord
+     */
+    SELECT_LINK_BY_DISCORD("SELECT id FROM %slinks WHERE discord = ?"),
+    /**
+     * Binds role, action and channel. Generates the id
+     */
+    INSERT_ROLE_JOB("INSERT INTO %srole_jobs (role, action, channel) VALUES (?,?,?)"),
+    /**
+     * Binds last_member, done and id
+     */
+    UPDATE_ROLE_JOB("UPDATE %srole_jobs SET last_member = ?, done = ? WHERE id = ?"),
+    SELECT_ROLE_JOBS("SELECT id, role, action, channel, last_member, done FROM %srole_jobs ORDER BY id"),
+    /**
+     * Binds id
+     */
+    DELETE_ROLE_JOB("DELETE FROM %srole_jobs WHERE id = ?");
+
+    private final String sql;
+
+    SQLStatement(@Language("sql") String sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * @param prefix The table prefix from the config
+     * @return The statement with the table prefix filled in
+     */
+    public String getSql(String prefix) {
+        return String.format(sql, prefix);
+    }
+}
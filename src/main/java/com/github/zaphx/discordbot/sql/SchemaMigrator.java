@@ -0,0 +1,79 @@
+package com.github.zaphx.discordbot.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+/**
+ * Brings the database schema up to date by applying every {@link Migration} newer than the version recorded in the
+ * schema_version table. A database that is already up to date costs a single query.
+ */
+public class SchemaMigrator {
+
+    /**
+     * MySQL error code for an index that already exists
+     */
+    private static final int DUPLICATE_KEY_NAME = 1061;
+
+    private final String prefix;
+    private final Logger log;
+
+    /**
+     * @param prefix The table prefix from the config
+     * @param log    The logger to report applied migrations to
+     */
+    public SchemaMigrator(String prefix, Logger log) {
+        this.prefix = prefix;
+        this.log = log;
+    }
+
+    /**
+     * Applies every pending migration in order
+     *
+     * @param connection The connection to migrate with
+     * @throws SQLException If a migration fails. Migrations before it stay applied
+     */
+    public void migrate(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + prefix + "schema_version (\n" +
+                    "version INTEGER NOT NULL PRIMARY KEY, \n" +
+                    "description VARCHAR(255) NOT NULL, \n" +
+                    "installed DATETIME NOT NULL DEFAULT NOW()" +
+                    ")");
+        }
+        int current = getVersion(connection);
+        for (Migration migration : Migration.values()) {
+            if (migration.getVersion() <= current) {
+                continue;
+            }
+            log.info("Migrating the database to version " + migration.getVersion() + ": " + migration.getDescription());
+            // MySQL commits schema changes right away, so a failed migration cannot be rolled back and is retried instead
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : migration.getStatements(prefix)) {
+                    try {
+                        statement.execute(sql);
+                    } catch (SQLException e) {
+                        if (e.getErrorCode() != DUPLICATE_KEY_NAME) {
+                            throw e;
+                        }
+                    }
+                }
+            }
+            try (PreparedStatement record = connection.prepareStatement("INSERT INTO " + prefix + "schema_version (version, description) VALUES (?,?)")) {
+                record.setInt(1, migration.getVersion());
+                record.setString(2, migration.getDescription());
+                record.execute();
+            }
+        }
+    }
+
+    private int getVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet set = statement.executeQuery("SELECT MAX(version) AS version FROM " + prefix + "schema_version")) {
+            return set.next() ? set.getInt("version") : 0;
+        }
+    }
+}
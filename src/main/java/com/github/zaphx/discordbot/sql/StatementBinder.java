@@ -0,0 +1,17 @@
+package com.github.zaphx.discordbot.sql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds the parameters of a {@link SQLStatement}
+ */
+@FunctionalInterface
+public interface StatementBinder {
+
+    /**
+     * @param statement The prepared statement to bind the parameters of
+     * @throws SQLException If a parameter could not be bound
+     */
+    void bind(PreparedStatement statement) throws SQLException;
+}
@@ -1,9 +1,8 @@
 package com.github.zaphx.discordbot.utilities;
 
 import com.github.zaphx.discordbot.Dizcord;
-import com.github.zaphx.discordbot.managers.DiscordClientManager;
-import discord4j.core.DiscordClient;
-import discord4j.core.object.entity.TextChannel;
+import com.github.zaphx.discordbot.managers.ChannelManager;
+import discord4j.core.object.entity.MessageChannel;
 import discord4j.core.object.util.Snowflake;
 
 public enum DiscordChannelTypes {
@@ -16,14 +15,17 @@ public enum DiscordChannelTypes {
     SUGGESTIONS("discord.suggestions-channel");
 
     private String path;
-    private DiscordClient client = DiscordClientManager.getInstance().getClient();
+    /**
+     * The Id from the config, read the first time it is needed
+     */
+    private volatile Snowflake id;
 
     DiscordChannelTypes(String path) {
         this.path = path;
     }
 
-    public TextChannel getChannel() {
-        return client.getChannelById(Snowflake.of(Dizcord.getInstance().getConfig().getLong(this.path))).cast(TextChannel.class).block();
+    public MessageChannel getChannel() {
+        return ChannelManager.getInstance().getChannel(getId());
     }
 
     public String getPath() {
@@ -31,6 +33,7 @@ public enum DiscordChannelTypes {
     }
 
     public Snowflake getId() {
-        return Snowflake.of(Dizcord.getInstance().getConfig().getLong(this.path));
+        Snowflake id = this.id;
+        return id == null ? this.id = Snowflake.of(Dizcord.getInstance().getConfig().getLong(this.path)) : id;
     }
 }
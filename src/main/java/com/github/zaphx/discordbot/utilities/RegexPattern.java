@@ -11,7 +11,7 @@ public enum RegexPattern {
     IP("(?:[0-9]{1,3}([\\.]|dot|\\(dot\\)|\\(\\))){3}[0-9]{1,3}(:[0-9]{5})?"),
     TOKEN("([a-zA-Z0-9]{24}\\.[a-zA-Z0-9]{6}\\.[a-zA-Z0-9_\\-]{27}|mfa\\.[a-zA-Z0-9_\\-]{84})"),
     EMOTES("([\\u20a0-\\u32ff\\ud83c\\udc00-\\ud83d\\udeff\\udbb9\\udce5-\\udbb9\\udcee])"),
-    ROLE("(<@(&)?(\\d+)>)");
+    ROLE("(<@&(\\d+)>)");
 
     private Pattern pattern;
 
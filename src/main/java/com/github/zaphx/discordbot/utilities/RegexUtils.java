@@ -1,5 +1,6 @@
 package com.github.zaphx.discordbot.utilities;
 
+import com.github.zaphx.discordbot.filter.ContentScan;
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.User;
 
@@ -21,14 +22,13 @@ public class RegexUtils {
         return m.find() && m.group(0).split(" ").length <= length;
     }
 
-    public static String stripString(MessageCreateEvent event, Pattern patternToStrip, String stringToStrip) {
-        Matcher matcher = patternToStrip.matcher(stringToStrip);
-        if (matcher.find()) {
-            stringToStrip = stringToStrip.replaceAll(RegexPattern.IP.getPattern().pattern(), "[IP hidden]");
-            event.getMember()
-                    .map(member -> member.getPrivateChannel()
-                            .map(channel -> channel.createMessage("Hidden IP was: " + matcher.group(0)).subscribe()));
+    public static String stripString(MessageCreateEvent event, ContentScan scan) {
+        if (!scan.contains(RegexPattern.IP)) {
+            return scan.getContent();
         }
-        return stringToStrip;
+        String hidden = scan.getMatches(RegexPattern.IP).get(0);
+        event.getMember().ifPresent(member -> member.getPrivateChannel()
+                .subscribe(channel -> channel.createMessage("Hidden IP was: " + hidden).subscribe()));
+        return scan.replace(RegexPattern.IP, "[IP hidden]");
     }
 }